@@ -0,0 +1,25 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// successful vs. failed (queue full / empty) operations, reported by JMH next to the raw throughput
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class OpCounters {
+    public long offered;
+    public long offerFailed;
+    public long polled;
+    public long pollFailed;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        offered = 0;
+        offerFailed = 0;
+        polled = 0;
+        pollFailed = 0;
+    }
+}
@@ -0,0 +1,132 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Jmh;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageSlot;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.SlotHandler;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Common non-blocking view (offer / poll) of every queue under test
+//
+// Non-blocking on purpose: when JMH ends an iteration, producers / consumers must not stay blocked on a
+// full / empty queue. Failed attempts are counted separately (see OpCounters).
+public interface QueueAdapter {
+
+    boolean offer(String data);
+
+    // returns null when empty
+    String poll();
+
+    // consumes one message into the blackhole, returns false when empty
+    // (a queue which can hand out a message without allocating it overrides this, poll() has to return a String)
+    default boolean poll(Blackhole blackhole) {
+        String data = poll();
+        if (data == null) {
+            return false;
+        }
+        blackhole.consume(data);
+        return true;
+    }
+
+    static QueueAdapter create(String type, int capacity, int payloadSize) {
+        if (type.startsWith("SharedQueue-")) {
+            SharedQueue.Mode mode = SharedQueue.Mode.valueOf(type.substring("SharedQueue-".length()));
+            SharedQueue queue = new SharedQueue(capacity, mode, SharedQueue.DEFAULT_WAIT_STRATEGY, Math.max(payloadSize, 1));
+            queue.setLogging(false);
+
+            // PREALLOCATED: the slot is read in place, so -prof gc shows what that mode saves
+            ThreadLocal<BlackholeHandler> handlers = ThreadLocal.withInitial(BlackholeHandler::new);
+
+            return new QueueAdapter() {
+                @Override
+                public boolean offer(String data) {
+                    return queue.offer(data);
+                }
+
+                @Override
+                public String poll() {
+                    Message message = queue.poll();
+                    return message == null ? null : message.data();
+                }
+
+                @Override
+                public boolean poll(Blackhole blackhole) {
+                    if (mode != SharedQueue.Mode.PREALLOCATED) {
+                        return QueueAdapter.super.poll(blackhole);
+                    }
+
+                    BlackholeHandler handler = handlers.get();
+                    handler.blackhole = blackhole;
+                    return queue.poll(handler);
+                }
+            };
+        }
+
+        return switch (type) {
+            case "ArrayBlockingQueue" -> of(new ArrayBlockingQueue<>(capacity));
+            case "LinkedBlockingQueue" -> of(new LinkedBlockingQueue<>(capacity));
+            case "LinkedTransferQueue" -> bounded(new LinkedTransferQueue<>(), capacity);
+            default -> throw new IllegalArgumentException("unknown queue type: " + type);
+        };
+    }
+
+    private static QueueAdapter of(Queue<String> queue) {
+        return new QueueAdapter() {
+            @Override
+            public boolean offer(String data) {
+                return queue.offer(data);
+            }
+
+            @Override
+            public String poll() {
+                return queue.poll();
+            }
+        };
+    }
+
+    // LinkedTransferQueue is unbounded: without a limit, producers would fill the heap during an iteration
+    // (size() is O(n) there, so a separate counter is used)
+    private static QueueAdapter bounded(Queue<String> queue, int capacity) {
+        AtomicInteger count = new AtomicInteger();
+
+        return new QueueAdapter() {
+            @Override
+            public boolean offer(String data) {
+                // reserve first: a check and a separate increment would let concurrent producers overshoot
+                if (count.incrementAndGet() > capacity) {
+                    count.decrementAndGet();
+                    return false;
+                }
+                return queue.offer(data);
+            }
+
+            @Override
+            public String poll() {
+                String data = queue.poll();
+                if (data != null) {
+                    count.decrementAndGet();
+                }
+                return data;
+            }
+        };
+    }
+
+    // one per consumer thread, reused for every message (no capturing lambda per poll)
+    final class BlackholeHandler implements SlotHandler {
+        Blackhole blackhole;
+
+        @Override
+        public void onMessage(MessageSlot slot) {
+            blackhole.consume(slot.ID());
+            for (int i = 0; i < slot.length(); i++) {
+                blackhole.consume(slot.charAt(i));
+            }
+        }
+    }
+}
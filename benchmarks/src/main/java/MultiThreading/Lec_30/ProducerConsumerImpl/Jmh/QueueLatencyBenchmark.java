@@ -0,0 +1,93 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Hand-off latency (percentiles via SampleTime): ping-pong between the benchmark thread and an echo thread
+//
+//   benchmark thread --ping--> echo thread --pong--> benchmark thread
+//
+// one sample = one round trip = 2 hand-offs through the queue type under test
+// needs 2 free cores (both sides spin), allocation rate: -prof gc
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+public class QueueLatencyBenchmark {
+
+    @Param({
+            "SharedQueue-MONITOR", "SharedQueue-CONDITION", "SharedQueue-LOCK_FREE", "SharedQueue-PREALLOCATED",
+            "ArrayBlockingQueue", "LinkedBlockingQueue", "LinkedTransferQueue"
+    })
+    public String queueType;
+
+    @Param({"16", "256"})
+    public int payloadSize;
+
+    private QueueAdapter ping;
+    private QueueAdapter pong;
+    private String payload;
+    private Thread echo;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ping = QueueAdapter.create(queueType, 1024, payloadSize);
+        pong = QueueAdapter.create(queueType, 1024, payloadSize);
+        payload = "x".repeat(payloadSize);
+        running = true;
+
+        echo = new Thread(() -> {
+            while (running) {
+                String data = ping.poll();
+
+                if (data == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                while (!pong.offer(data)) {
+                    Thread.onSpinWait();
+                }
+            }
+        }, "echo");
+        echo.setDaemon(true);
+        echo.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        echo.join();
+    }
+
+    @Benchmark
+    public String roundTrip() {
+        while (!ping.offer(payload)) {
+            Thread.onSpinWait();
+        }
+
+        String data;
+        while ((data = pong.poll()) == null) {
+            Thread.onSpinWait();
+        }
+        return data;
+    }
+}
@@ -0,0 +1,124 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Producer / consumer throughput of every queue type, capacity and payload size
+//
+// groups (producers / consumers): spsc = 1/1, p2c3 = 2/3 (same as ProducerConsumerImpl.Main), mpmc = 4/4
+// any other split: -tg <producers>,<consumers>   e.g. java -jar target/benchmarks.jar QueueThroughput.*spsc -tg 8,8
+// allocation rate: -prof gc
+//
+// Use the "offered" / "polled" aux counters (successful operations), the primary score also counts
+// attempts on a full / empty queue.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class QueueThroughputBenchmark {
+
+    @Param({
+            "SharedQueue-MONITOR", "SharedQueue-CONDITION", "SharedQueue-LOCK_FREE", "SharedQueue-PREALLOCATED",
+            "ArrayBlockingQueue", "LinkedBlockingQueue", "LinkedTransferQueue"
+    })
+    public String queueType;
+
+    @Param({"64", "1024"})
+    public int capacity;
+
+    @Param({"16", "256"})
+    public int payloadSize;
+
+    private QueueAdapter queue;
+    private String payload;
+
+    // new (empty) queue every iteration, so leftovers of the previous one don't matter
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = QueueAdapter.create(queueType, capacity, payloadSize);
+        payload = "x".repeat(payloadSize);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean spscProducer(OpCounters counters) {
+        return offer(counters);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean spscConsumer(OpCounters counters, Blackhole blackhole) {
+        return poll(counters, blackhole);
+    }
+
+    @Benchmark
+    @Group("p2c3")
+    @GroupThreads(2)
+    public boolean p2c3Producer(OpCounters counters) {
+        return offer(counters);
+    }
+
+    @Benchmark
+    @Group("p2c3")
+    @GroupThreads(3)
+    public boolean p2c3Consumer(OpCounters counters, Blackhole blackhole) {
+        return poll(counters, blackhole);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(4)
+    public boolean mpmcProducer(OpCounters counters) {
+        return offer(counters);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(4)
+    public boolean mpmcConsumer(OpCounters counters, Blackhole blackhole) {
+        return poll(counters, blackhole);
+    }
+
+    private boolean offer(OpCounters counters) {
+        boolean offered = queue.offer(payload);
+
+        if (offered) {
+            counters.offered++;
+        } else {
+            counters.offerFailed++;
+            Thread.onSpinWait();
+        }
+        return offered;
+    }
+
+    private boolean poll(OpCounters counters, Blackhole blackhole) {
+        boolean polled = queue.poll(blackhole);
+
+        if (polled) {
+            counters.polled++;
+        } else {
+            counters.pollFailed++;
+            Thread.onSpinWait();
+        }
+        return polled;
+    }
+}
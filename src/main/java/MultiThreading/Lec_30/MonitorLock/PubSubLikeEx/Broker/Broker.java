@@ -0,0 +1,35 @@
+package MultiThreading.Lec_30.MonitorLock.PubSubLikeEx.Broker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-process pub/sub: named topics, every subscriber of a topic gets every message published after it subscribed
+public class Broker {
+
+    public static final int DEFAULT_TOPIC_CAPACITY = 1024;
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final int topicCapacity;
+
+    public Broker() {
+        this(DEFAULT_TOPIC_CAPACITY);
+    }
+
+    // topicCapacity: ring size of every topic (power of two), i.e. how far the slowest subscriber may fall behind
+    public Broker(int topicCapacity) {
+        this.topicCapacity = topicCapacity;
+    }
+
+    // created on first use
+    public Topic topic(String name) {
+        return topics.computeIfAbsent(name, n -> new Topic(n, topicCapacity));
+    }
+
+    public long publish(String topic, String data) {
+        return topic(topic).publish(data);
+    }
+
+    public Subscription subscribe(String topic, LagPolicy policy) {
+        return topic(topic).subscribe(policy);
+    }
+}
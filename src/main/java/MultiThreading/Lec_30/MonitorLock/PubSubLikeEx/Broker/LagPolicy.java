@@ -0,0 +1,7 @@
+package MultiThreading.Lec_30.MonitorLock.PubSubLikeEx.Broker;
+
+// what a topic does with a subscriber which is a full ring behind (its next message is about to be overwritten)
+public enum LagPolicy {
+    BACKPRESSURE, // publishers of the topic wait till the subscriber has read it (slowest subscriber sets the pace)
+    DROP          // subscriber is disconnected, publishers never wait for it
+}
@@ -0,0 +1,108 @@
+package MultiThreading.Lec_30.MonitorLock.PubSubLikeEx.Broker;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.util.Arrays;
+
+public class Main {
+
+    private static final int PUBLISHERS = 2;
+    private static final int MESSAGES_PER_PUBLISHER = 500_000;
+    private static final int TOTAL = PUBLISHERS * MESSAGES_PER_PUBLISHER;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        Broker broker = new Broker(1024);
+
+        // subscribe before publishing, so they see every message
+        Subscription fast = broker.subscribe("prices", LagPolicy.BACKPRESSURE);
+        Subscription slow = broker.subscribe("prices", LagPolicy.BACKPRESSURE);
+        Subscription tooSlow = broker.subscribe("prices", LagPolicy.DROP);
+
+        Message[] firstSeen = new Message[2];
+        long[] outOfOrder = new long[2];
+
+        Thread fastReader = new Thread(() -> outOfOrder[0] = readAll(fast, firstSeen, 0, 0));
+        Thread slowReader = new Thread(() -> outOfOrder[1] = readAll(slow, firstSeen, 1, 1000));
+
+        Thread droppedReader = new Thread(() -> {
+            long read = 0;
+            try {
+                while (true) {
+                    tooSlow.take();
+                    read++;
+                    if (read % 100 == 0) {
+                        Thread.sleep(1); // can't keep up
+                    }
+                }
+            } catch (IllegalStateException e) {
+                System.out.println("after " + read + " messages: " + e.getMessage());
+            } catch (Exception e) {
+                // exception handling
+            }
+        });
+
+        fastReader.start();
+        slowReader.start();
+        droppedReader.start();
+
+        long start = System.nanoTime();
+        Thread[] publishers = new Thread[PUBLISHERS];
+        for (int p = 0; p < PUBLISHERS; p++) {
+            int publisher = p;
+            publishers[p] = new Thread(() -> {
+                for (int i = 0; i < MESSAGES_PER_PUBLISHER; i++) {
+                    broker.publish("prices", publisher + ":" + i);
+                }
+            });
+            publishers[p].start();
+        }
+
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        fastReader.join();
+        slowReader.join();
+        droppedReader.join();
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("%,d messages fanned out to 2 subscribers in %d ms (%,.0f msgs/sec)%n",
+                TOTAL, nanos / 1_000_000, TOTAL / (nanos / 1e9));
+        System.out.println("out of order (per publisher): fast " + outOfOrder[0] + ", slow " + outOfOrder[1]);
+        System.out.println("same Message object for both subscribers (no copy): " + (firstSeen[0] == firstSeen[1]));
+        System.out.println("subscribers left on 'prices': " + broker.topic("prices").getSubscriberCount());
+
+        System.out.println("Main method ends...");
+    }
+
+    // reads TOTAL messages, returns how many came out of order for their publisher
+    private static long readAll(Subscription subscription, Message[] firstSeen, int reader, int pauseEvery) {
+        int[] lastIndex = new int[PUBLISHERS];
+        Arrays.fill(lastIndex, -1);
+        long outOfOrder = 0;
+
+        for (int read = 0; read < TOTAL; read++) {
+            Message message = subscription.take();
+            if (read == 0) {
+                firstSeen[reader] = message;
+            }
+
+            String data = message.data();
+            int separator = data.indexOf(':');
+            int publisher = Integer.parseInt(data, 0, separator, 10);
+            int index = Integer.parseInt(data, separator + 1, data.length(), 10);
+
+            if (index != lastIndex[publisher] + 1) {
+                outOfOrder++;
+            }
+            lastIndex[publisher] = index;
+
+            if (pauseEvery > 0 && read % pauseEvery == 0) {
+                Thread.yield(); // slower than the other one, publishers wait for it (BACKPRESSURE)
+            }
+        }
+        return outOfOrder;
+    }
+}
@@ -0,0 +1,102 @@
+package MultiThreading.Lec_30.MonitorLock.PubSubLikeEx.Broker;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+// One subscriber's view of a topic: just a cursor (next sequence to read) into the topic's ring
+//
+// - read by one thread only (the subscriber), so moving the cursor is a plain volatile write, no CAS
+// - the cursor is padded onto its own cache line: every subscriber writes its cursor all the time,
+//   subscriptions created one after another would otherwise share a line
+public class Subscription extends SubscriptionPad1 {
+
+    private final Topic topic;
+    final LagPolicy policy;
+    volatile boolean dropped;
+
+    Subscription(Topic topic, LagPolicy policy, long start) {
+        this.topic = topic;
+        this.policy = policy;
+        this.cursor = start;
+    }
+
+    // next message, or null when there is none yet (never waits)
+    // also null once dropped, see isDropped()
+    public Message poll() {
+        long seq = cursor;
+        Message message = topic.read(seq);
+
+        // dropped: the slot may already hold a newer message, what we read can't be trusted
+        if (message == null || dropped) {
+            return null;
+        }
+
+        cursor = seq + 1;
+
+        if (topic.waitingPublishers > 0) {
+            synchronized (topic) {
+                topic.notifyAll();
+            }
+        }
+        return message;
+    }
+
+    // waits till the next message is published
+    public Message take() {
+        Message message;
+
+        while ((message = poll()) == null) {
+            if (dropped) {
+                throw new IllegalStateException("subscriber of topic '" + topic.getName() + "' was dropped: "
+                        + topic.capacity() + " messages behind");
+            }
+
+            synchronized (topic) {
+                topic.waitingSubscribers++;
+
+                try {
+                    // same pattern as SharedResource.consumeItem()
+                    while (!topic.isAvailable(cursor) && !dropped) {
+                        try {
+                            topic.wait(); // releases the monitor lock
+                        } catch (InterruptedException e) {
+                            // exception handling
+                        }
+                    }
+                } finally {
+                    topic.waitingSubscribers--;
+                }
+            }
+        }
+        return message;
+    }
+
+    // messages published but not yet read by this subscriber
+    public long lag() {
+        return Math.max(0, topic.getPublished() - cursor);
+    }
+
+    public boolean isDropped() {
+        return dropped;
+    }
+
+    public LagPolicy getPolicy() {
+        return policy;
+    }
+
+    public void close() {
+        topic.unsubscribe(this);
+    }
+}
+
+// padding: 8 longs (64 bytes) on each side of the cursor (super class fields are laid out first)
+abstract class SubscriptionPad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SubscriptionCursor extends SubscriptionPad0 {
+    volatile long cursor; // next sequence to read
+}
+
+abstract class SubscriptionPad1 extends SubscriptionCursor {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
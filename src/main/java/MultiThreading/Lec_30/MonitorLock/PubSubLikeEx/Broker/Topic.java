@@ -0,0 +1,161 @@
+package MultiThreading.Lec_30.MonitorLock.PubSubLikeEx.Broker;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageIdGenerator;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// One named topic: a single ring, written once per message, read by every subscriber through its own cursor
+//
+// Compared to SharedResource (PubSubLikeEx):
+// - not one boolean item but a ring of "capacity" messages, a message is gone only when every subscriber read it
+//   (SharedQueue is the other way around: every message goes to exactly one consumer)
+// - publishers claim a sequence number (one atomic increment), write the slot and mark it available,
+//   subscribers only read: no copying, all of them get the same Message object
+// - waiting still works like SharedResource: "synchronized" + while + wait() / notifyAll(), but notifyAll()
+//   is only called when somebody is waiting (counted in waitingPublishers / waitingSubscribers)
+// - gate: lowest cursor of all subscribers (cached), a publisher only looks at the cursors when its slot
+//   is at / beyond the cached gate, i.e. about once per ring round, not once per message
+public class Topic {
+
+    private final String name;
+    private final int capacity;
+    private final int mask;
+
+    private final AtomicReferenceArray<Message> entries;
+    private final AtomicLongArray available; // sequence which is readable in slot i (-1 = none yet)
+    private final AtomicLong next = new AtomicLong(); // next sequence to claim
+
+    private final CopyOnWriteArrayList<Subscription> subscribers = new CopyOnWriteArrayList<>();
+    private volatile long gate; // every subscriber's cursor is >= gate, only written while holding the monitor
+
+    volatile int waitingPublishers;
+    volatile int waitingSubscribers;
+
+    Topic(String name, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+
+        this.name = name;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.available = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            available.set(i, -1);
+        }
+    }
+
+    // returns the sequence of the message
+    public long publish(String data) {
+        Message message = new Message(data, MessageIdGenerator.DEFAULT.nextId());
+        long seq = next.getAndIncrement();
+
+        awaitSlot(seq);
+
+        int idx = (int) (seq & mask);
+        entries.set(idx, message);
+        available.set(idx, seq);
+
+        if (waitingSubscribers > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        return seq;
+    }
+
+    // slot of "seq" still holds seq - capacity: wait till no subscriber needs it anymore
+    private void awaitSlot(long seq) {
+        long wrap = seq - capacity;
+
+        if (wrap < gate) {
+            return;
+        }
+
+        synchronized (this) {
+            waitingPublishers++;
+
+            try {
+                while (wrap >= (gate = computeGate(wrap))) {
+                    try {
+                        wait(); // subscribers notify when they move their cursor
+                    } catch (InterruptedException e) {
+                        // exception handling
+                    }
+                }
+            } finally {
+                waitingPublishers--;
+            }
+        }
+    }
+
+    // must be called while holding the monitor (same as subscribe(), so no new subscriber is missed)
+    private long computeGate(long wrap) {
+        long min = next.get(); // a new subscriber starts here, never lower
+
+        for (Subscription subscription : subscribers) {
+            long cursor = subscription.cursor;
+
+            if (cursor <= wrap && subscription.policy == LagPolicy.DROP) {
+                // dropped before its slot is overwritten, so it never reads a wrong message
+                drop(subscription);
+                continue;
+            }
+            min = Math.min(min, cursor);
+        }
+        return min;
+    }
+
+    // must be called while holding the monitor
+    private void drop(Subscription subscription) {
+        subscription.dropped = true;
+        subscribers.remove(subscription);
+        notifyAll(); // it may be waiting in take()
+    }
+
+    // starts with the next published message
+    public synchronized Subscription subscribe(LagPolicy policy) {
+        Subscription subscription = new Subscription(this, policy, next.get());
+        subscribers.add(subscription);
+        return subscription;
+    }
+
+    synchronized void unsubscribe(Subscription subscription) {
+        subscribers.remove(subscription);
+        notifyAll(); // publishers may be waiting for its cursor
+    }
+
+    // message "seq", null when it is not published yet
+    // caller must check its "dropped" flag after reading (the slot may have been reused for seq + capacity)
+    Message read(long seq) {
+        int idx = (int) (seq & mask);
+        return available.get(idx) == seq ? entries.get(idx) : null;
+    }
+
+    boolean isAvailable(long seq) {
+        return available.get((int) (seq & mask)) == seq;
+    }
+
+    // messages published (or being published) so far
+    public long getPublished() {
+        return next.get();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
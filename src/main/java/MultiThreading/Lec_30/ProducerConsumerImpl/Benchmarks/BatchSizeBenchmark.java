@@ -0,0 +1,65 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Benchmarks;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Throughput of publishAll() / drainTo() vs. batch size (1 producer, 1 consumer)
+//
+// batch size 1 = one lock acquisition (+ one wake-up) per message, same as publish() / consume()
+public class BatchSizeBenchmark {
+
+    private static final int MESSAGES = 1 << 20; // multiple of every batch size
+    private static final int CAPACITY = 1024;
+    private static final int[] BATCH_SIZES = {1, 4, 16, 64, 256};
+
+    public static void main(String[] args) throws InterruptedException {
+
+        for (SharedQueue.Mode mode : new SharedQueue.Mode[]{SharedQueue.Mode.MONITOR, SharedQueue.Mode.CONDITION}) {
+            // warm-up (JIT), result ignored
+            run(mode, 64);
+
+            for (int batchSize : BATCH_SIZES) {
+                long nanos = run(mode, batchSize);
+                System.out.printf("mode: %-9s batch: %4d -> %,12.0f msgs/sec%n",
+                        mode, batchSize, MESSAGES / (nanos / 1e9));
+            }
+        }
+    }
+
+    private static long run(SharedQueue.Mode mode, int batchSize) throws InterruptedException {
+        SharedQueue queue = new SharedQueue(CAPACITY, mode);
+        queue.setLogging(false);
+
+        // payloads are created upfront, so only the queue is measured
+        List<String> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add("Message-" + i);
+        }
+
+        Thread producer = new Thread(() -> {
+            for (int sent = 0; sent < MESSAGES; sent += batchSize) {
+                queue.publishAll(batch);
+            }
+        });
+
+        Thread consumer = new Thread(() -> {
+            List<Message> received = new ArrayList<>(batchSize);
+            int total = 0;
+
+            while (total < MESSAGES) {
+                received.clear();
+                total += queue.drainTo(received, batchSize);
+            }
+        });
+
+        long start = System.nanoTime();
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        return System.nanoTime() - start;
+    }
+}
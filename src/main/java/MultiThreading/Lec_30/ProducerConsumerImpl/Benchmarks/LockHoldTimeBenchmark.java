@@ -0,0 +1,77 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Benchmarks;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Logging.AsyncLogSink;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Logging.LogSink;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Logging.SyncLogSink;
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// Average lock hold time (and throughput) of publish() / consume() with
+//   - sync logging : printf while holding the lock (the old behaviour)
+//   - async logging: only enqueue while holding the lock
+//   - no logging
+// 2 producers, 3 consumers (same as Main). Log lines go to a null stream, so the terminal isn't measured.
+public class LockHoldTimeBenchmark {
+
+    private static final int PRODUCERS = 2;
+    private static final int CONSUMERS = 3;
+    private static final int MESSAGES_PER_PRODUCER = 150_000; // multiple of CONSUMERS * PRODUCERS
+
+    public static void main(String[] args) throws InterruptedException {
+        PrintStream nullStream = new PrintStream(OutputStream.nullOutputStream());
+
+        for (SharedQueue.Mode mode : new SharedQueue.Mode[]{SharedQueue.Mode.MONITOR, SharedQueue.Mode.CONDITION}) {
+            run(mode, "warm-up", new SyncLogSink(nullStream), false);
+
+            run(mode, "sync", new SyncLogSink(nullStream), true);
+
+            try (AsyncLogSink async = new AsyncLogSink(nullStream, 1 << 16)) {
+                run(mode, "async", async, true);
+                System.out.printf("%29s dropped log events: %,d%n", "", async.getDropped());
+            }
+
+            run(mode, "off", LogSink.OFF, true);
+        }
+    }
+
+    private static void run(SharedQueue.Mode mode, String name, LogSink sink, boolean print) throws InterruptedException {
+        SharedQueue queue = new SharedQueue(1024, mode);
+        queue.setLogSink(sink);
+        queue.setLockHoldTracking(true);
+
+        int total = PRODUCERS * MESSAGES_PER_PRODUCER;
+        Thread[] threads = new Thread[PRODUCERS + CONSUMERS];
+
+        for (int i = 0; i < PRODUCERS; i++) {
+            threads[i] = new Thread(() -> {
+                for (int m = 0; m < MESSAGES_PER_PRODUCER; m++) {
+                    queue.publish("Message-" + m);
+                }
+            });
+        }
+
+        for (int i = 0; i < CONSUMERS; i++) {
+            threads[PRODUCERS + i] = new Thread(() -> {
+                for (int m = 0; m < total / CONSUMERS; m++) {
+                    queue.consume();
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf("mode: %-9s logging: %-5s -> avg lock hold: %,8.0f ns, %,10.0f msgs/sec%n",
+                    mode, name, queue.getAverageLockHoldNanos(), total / (nanos / 1e9));
+        }
+    }
+}
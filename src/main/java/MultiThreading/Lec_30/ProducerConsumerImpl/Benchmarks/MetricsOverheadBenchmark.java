@@ -0,0 +1,73 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Benchmarks;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Metrics.MetricsDump;
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+// Throughput with metrics off vs. on (1 producer, 1 consumer, logging off), per mode
+// best of ROUNDS runs each, so a single noisy run doesn't decide the overhead (on 1-2 cores the
+// scheduler still moves results by +-10%, compare several runs)
+// while metrics are on, a MetricsDump writes a snapshot every 100 ms (file printed at the end)
+public class MetricsOverheadBenchmark {
+
+    private static final int MESSAGES = 2_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        Path dumpFile = Files.createTempFile("queue-metrics", ".log");
+
+        for (SharedQueue.Mode mode : SharedQueue.Mode.values()) {
+            long bestOff = Long.MAX_VALUE;
+            long bestOn = Long.MAX_VALUE;
+            SharedQueue lastOn = null;
+
+            // alternating, so JIT warm-up / CPU frequency changes hit both sides
+            for (int round = 0; round < ROUNDS; round++) {
+                bestOff = Math.min(bestOff, run(new SharedQueue(1024, mode), false, dumpFile));
+
+                lastOn = new SharedQueue(1024, mode);
+                bestOn = Math.min(bestOn, run(lastOn, true, dumpFile));
+            }
+
+            System.out.printf("mode: %-12s off: %,12.0f msgs/sec   on: %,12.0f msgs/sec   overhead: %5.1f%%%n",
+                    mode, MESSAGES / (bestOff / 1e9), MESSAGES / (bestOn / 1e9), 100.0 * (bestOn - bestOff) / bestOff);
+            System.out.println("    " + lastOn.getMetrics().snapshot());
+        }
+
+        System.out.println("dumped snapshots: " + dumpFile + " (" + Files.readAllLines(dumpFile).size() + " lines)");
+    }
+
+    private static long run(SharedQueue queue, boolean metrics, Path dumpFile) throws InterruptedException {
+        queue.setLogging(false);
+        queue.setMetrics(metrics);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                queue.publish("Message");
+            }
+        });
+
+        Thread consumer = new Thread(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                queue.consume();
+            }
+        });
+
+        MetricsDump dump = metrics ? new MetricsDump(queue.getMetrics(), dumpFile, Duration.ofMillis(100)) : null;
+
+        long start = System.nanoTime();
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        long nanos = System.nanoTime() - start;
+
+        if (dump != null) {
+            dump.close();
+        }
+        return nanos;
+    }
+}
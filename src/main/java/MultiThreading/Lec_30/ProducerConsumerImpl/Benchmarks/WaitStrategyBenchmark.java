@@ -0,0 +1,91 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Benchmarks;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.BlockingWaitStrategy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.BusySpinWaitStrategy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.SpinThenYieldWaitStrategy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.TimedParkWaitStrategy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.WaitStrategy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Publish -> consume latency (percentiles) of every wait strategy under the same load:
+// 1 producer publishing one message every PAUSE_NANOS, 1 consumer, LOCK_FREE mode
+//
+// Note: BusySpin needs a free core per waiting thread, on a machine with fewer cores than threads
+//       its latency gets worse than the other strategies (it steals the CPU from the producer)
+public class WaitStrategyBenchmark {
+
+    private static final int MESSAGES = 100_000;
+    private static final int WARMUP_MESSAGES = 20_000;
+    private static final long PAUSE_NANOS = 20_000; // ~50K msgs/sec
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, Supplier<WaitStrategy>> strategies = new LinkedHashMap<>();
+        strategies.put("BusySpin", BusySpinWaitStrategy::new);
+        strategies.put("SpinThenYield", SpinThenYieldWaitStrategy::new);
+        strategies.put("TimedPark", TimedParkWaitStrategy::new);
+        strategies.put("Blocking", BlockingWaitStrategy::new);
+
+        System.out.printf("%-14s %10s %10s %10s %10s %10s  (micro secs)%n", "strategy", "p50", "p90", "p99", "p99.9", "max");
+
+        for (Map.Entry<String, Supplier<WaitStrategy>> entry : strategies.entrySet()) {
+            long[] latencies = run(entry.getValue());
+            Arrays.sort(latencies);
+
+            System.out.printf("%-14s %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    entry.getKey(),
+                    percentile(latencies, 50),
+                    percentile(latencies, 90),
+                    percentile(latencies, 99),
+                    percentile(latencies, 99.9),
+                    latencies[latencies.length - 1] / 1000.0);
+        }
+    }
+
+    private static long[] run(Supplier<WaitStrategy> strategy) throws InterruptedException {
+        SharedQueue queue = new SharedQueue(1024, SharedQueue.Mode.LOCK_FREE, strategy);
+        queue.setLogging(false);
+
+        int total = WARMUP_MESSAGES + MESSAGES;
+        long[] latencies = new long[MESSAGES];
+
+        // the publish time travels inside the message data
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                queue.publish(Long.toString(System.nanoTime()));
+
+                long next = System.nanoTime() + PAUSE_NANOS;
+                while (System.nanoTime() < next) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+
+        Thread consumer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                long publishedAt = Long.parseLong(queue.consume().data());
+                long latency = System.nanoTime() - publishedAt;
+
+                if (i >= WARMUP_MESSAGES) {
+                    latencies[i - WARMUP_MESSAGES] = latency;
+                }
+            }
+        });
+
+        consumer.start();
+        producer.start();
+        producer.join();
+        consumer.join();
+        return latencies;
+    }
+
+    // sorted input, result in micro secs
+    private static double percentile(long[] sorted, double percentile) {
+        int idx = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(idx, 0)] / 1000.0;
+    }
+}
@@ -0,0 +1,89 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Benchmarks;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageSlot;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.SlotHandler;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Checks that PREALLOCATED mode doesn't allocate per message in steady state
+//
+// Every thread measures its own allocated bytes (HotSpot's per thread TLAB counter) around the measured loop,
+// the warm-up loop runs first so that JIT compilation / class loading isn't counted.
+// Exits with status 1 when producer or consumer allocated more than ALLOWED_BYTES_PER_MESSAGE.
+public class ZeroAllocationCheck {
+
+    private static final int WARMUP_MESSAGES = 200_000;
+    private static final int MESSAGES = 1_000_000;
+    private static final double ALLOWED_BYTES_PER_MESSAGE = 0.1;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws InterruptedException {
+        SharedQueue queue = new SharedQueue(1024, SharedQueue.Mode.PREALLOCATED);
+        queue.setLogging(false);
+
+        AtomicLong producerBytes = new AtomicLong();
+        AtomicLong consumerBytes = new AtomicLong();
+
+        Thread producer = new Thread(() -> {
+            // reused for every message, append(int) writes the digits into the existing buffer
+            StringBuilder payload = new StringBuilder(SharedQueue.DEFAULT_SLOT_CAPACITY);
+
+            publish(queue, payload, WARMUP_MESSAGES);
+
+            long before = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+            publish(queue, payload, MESSAGES);
+            producerBytes.set(THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - before);
+        });
+
+        Thread consumer = new Thread(() -> {
+            long[] checksum = new long[1];
+
+            // created once, reads the slot in place
+            SlotHandler handler = (MessageSlot slot) -> checksum[0] += slot.length() + slot.ID();
+
+            consume(queue, handler, WARMUP_MESSAGES);
+
+            long before = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+            consume(queue, handler, MESSAGES);
+            consumerBytes.set(THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - before);
+
+            System.out.println("checksum: " + checksum[0]);
+        });
+
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+
+        double producerPerMessage = (double) producerBytes.get() / MESSAGES;
+        double consumerPerMessage = (double) consumerBytes.get() / MESSAGES;
+
+        System.out.printf("producer: %,d bytes (%.4f bytes/msg)%n", producerBytes.get(), producerPerMessage);
+        System.out.printf("consumer: %,d bytes (%.4f bytes/msg)%n", consumerBytes.get(), consumerPerMessage);
+
+        boolean passed = producerPerMessage <= ALLOWED_BYTES_PER_MESSAGE && consumerPerMessage <= ALLOWED_BYTES_PER_MESSAGE;
+        System.out.println(passed ? "PASSED: no allocation per message" : "FAILED: messages allocate");
+
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static void publish(SharedQueue queue, StringBuilder payload, int count) {
+        for (int i = 0; i < count; i++) {
+            payload.setLength(0);
+            payload.append("Message-").append(i);
+            queue.publish(payload);
+        }
+    }
+
+    private static void consume(SharedQueue queue, SlotHandler handler, int count) {
+        for (int i = 0; i < count; i++) {
+            queue.consume(handler);
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package MultiThreading.Lec_30.ProducerConsumerImpl;
 
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
 public class Consumer implements Runnable {
 
     SharedQueue sharedQueue;
+    long processingMillis; // simulated work per message, 0 = consume as fast as possible
 
     public Consumer(SharedQueue sharedQueue) {
+        this(sharedQueue, 4000);
+    }
+
+    public Consumer(SharedQueue sharedQueue, long processingMillis) {
         this.sharedQueue = sharedQueue;
+        this.processingMillis = processingMillis;
     }
 
 
@@ -14,13 +22,22 @@ public class Consumer implements Runnable {
         System.out.println("Consumer thread: " + Thread.currentThread().getName()  + " is ready!");
 
         while (true) {
-            sharedQueue.consume();
+            Message message = sharedQueue.consume();
 
+            // a failed message isn't lost: nack() hands it to the queue's retry / dead-letter path,
+            // this thread goes on with the next message right away
             try {
-                Thread.sleep(4000);
+                process(message);
+                sharedQueue.ack(message);
             } catch (Exception e) {
-                // exception handling
+                sharedQueue.nack(message);
             }
         }
     }
+
+    protected void process(Message message) throws Exception {
+        if (processingMillis > 0) {
+            Thread.sleep(processingMillis);
+        }
+    }
 }
@@ -0,0 +1,133 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Delayed;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Delayed messages for a SharedQueue: kept in a TimingWheel till they are due, then published in batches
+//
+// - producers never touch the wheel: schedule() only pushes onto a lock-free stack (the "inbox", one CAS)
+// - one ticker thread owns the wheel: every tick it moves the inbox into the wheel, advances the wheel
+//   and publishes everything that became due with a single publishAllMessages()
+// - no pending messages = the ticker parks till the next schedule() (no idle wake-ups every tick)
+// - a publish which throws (e.g. a throwing publish listener) costs that batch at most, never the ticker:
+//   the batch isn't retried (part of it may be in the queue already), it is counted in failedBatches()
+public class DelayedDelivery {
+
+    private static final class Pending {
+        final Message message;
+        final long deadlineTick;
+        Pending next;
+
+        Pending(Message message, long deadlineTick) {
+            this.message = message;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final SharedQueue queue;
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicReference<Pending> inbox = new AtomicReference<>();
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    private final TimingWheel<Message> wheel = new TimingWheel<>(0);
+    private final Thread ticker;
+
+    public DelayedDelivery(SharedQueue queue, long tickDuration, TimeUnit unit) {
+        this.queue = queue;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.ticker = new Thread(this::tickLoop, "delayed-delivery-ticker");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    // O(1): one allocation + one CAS, the ticker does the rest
+    // the message keeps its ID (and attempt), it is published as it is
+    public void schedule(Message message, long delay, TimeUnit unit) {
+        // rounded up: a message is never delivered before its delay
+        long deadlineTick = (System.nanoTime() - startNanos + unit.toNanos(delay) + tickNanos - 1) / tickNanos;
+
+        if (deadlineTick - currentTick() > TimingWheel.MAX_DELAY_TICKS) {
+            throw new IllegalArgumentException("delay too long: " + delay + " " + unit);
+        }
+
+        Pending pending = new Pending(message, deadlineTick);
+        Pending head;
+        do {
+            head = inbox.get();
+            pending.next = head;
+        } while (!inbox.compareAndSet(head, pending));
+
+        scheduled.incrementAndGet();
+
+        // ticker may be parked without a timeout (nothing was pending)
+        if (head == null) {
+            LockSupport.unpark(ticker);
+        }
+    }
+
+    // scheduled but not yet published into the queue
+    public long pending() {
+        return scheduled.get() - delivered.get();
+    }
+
+    public long failedBatches() {
+        return failedBatches.get();
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / tickNanos;
+    }
+
+    private void tickLoop() {
+        List<Message> due = new ArrayList<>();
+        Consumer<Message> collect = due::add; // created once, not per tick
+
+        while (true) {
+            // inbox: newest first (stack), reverse it so messages with the same deadline keep their order
+            Pending node = inbox.getAndSet(null);
+            Pending reversed = null;
+            while (node != null) {
+                Pending next = node.next;
+                node.next = reversed;
+                reversed = node;
+                node = next;
+            }
+
+            for (Pending pending = reversed; pending != null; pending = pending.next) {
+                wheel.add(pending.message, pending.deadlineTick, collect);
+            }
+
+            wheel.advanceTo(currentTick(), collect);
+
+            if (!due.isEmpty()) {
+                try {
+                    queue.publishAllMessages(due); // waits if the ready queue is full (back-pressure on the ticker only)
+                } catch (RuntimeException e) {
+                    // exception handling: see class comment
+                    failedBatches.incrementAndGet();
+                }
+                delivered.addAndGet(due.size());
+                due.clear();
+            }
+
+            if (wheel.pending() == 0 && inbox.get() == null) {
+                LockSupport.park(this); // till schedule() un-parks us
+            } else {
+                long nextTickNanos = startNanos + (wheel.getCurrentTick() + 1) * tickNanos;
+                LockSupport.parkNanos(this, nextTickNanos - System.nanoTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Delayed;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class Main {
+
+    private static final int MESSAGES = 1_000_000;
+    private static final int MAX_DELAY_MILLIS = 3000;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        SharedQueue queue = new SharedQueue(4096, SharedQueue.Mode.CONDITION);
+        queue.setLogging(false);
+
+        // how late (after its due time) every message was consumed
+        long[] lateness = new long[MESSAGES];
+
+        Thread consumer = new Thread(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                long dueAt = Long.parseLong(queue.consume().data());
+                lateness[i] = System.nanoTime() - dueAt;
+            }
+        });
+        consumer.start();
+
+        // the due time travels inside the message data
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            long delayMillis = ThreadLocalRandom.current().nextLong(MAX_DELAY_MILLIS);
+            long dueAt = System.nanoTime() + delayMillis * 1_000_000;
+            queue.publishDelayed(Long.toString(dueAt), Duration.ofMillis(delayMillis));
+        }
+        long scheduleNanos = System.nanoTime() - start;
+
+        System.out.printf("scheduled %,d delayed messages in %,d ms (%,.0f per sec), pending: %,d%n",
+                MESSAGES, scheduleNanos / 1_000_000, MESSAGES / (scheduleNanos / 1e9), queue.getPendingDelayed());
+
+        consumer.join();
+
+        Arrays.sort(lateness);
+        System.out.printf("delivered after due time (ms): p50 %.2f, p99 %.2f, p99.9 %.2f, max %.2f, min %.2f%n",
+                lateness[MESSAGES / 2] / 1e6,
+                lateness[(int) (MESSAGES * 0.99)] / 1e6,
+                lateness[(int) (MESSAGES * 0.999)] / 1e6,
+                lateness[MESSAGES - 1] / 1e6,
+                lateness[0] / 1e6);
+
+        System.out.println("Main method ends...");
+    }
+}
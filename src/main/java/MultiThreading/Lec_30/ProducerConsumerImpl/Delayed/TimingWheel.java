@@ -0,0 +1,138 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Delayed;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel (like the Linux kernel timers / Kafka's purgatory), NOT thread-safe
+//
+// LEVELS wheels of WHEEL_SIZE buckets each, a bucket is a linked list of entries:
+//   level 0: 1 bucket = 1 tick                 -> covers       512 ticks
+//   level 1: 1 bucket = 512 ticks              -> covers   262,144 ticks
+//   level 2: 1 bucket = 512^2 ticks            -> covers       ~1.3 * 10^8 ticks
+//   level 3: 1 bucket = 512^3 ticks            -> covers       ~6.9 * 10^10 ticks (~2 years with 1 ms ticks)
+//
+// add()      : O(1), picks the level by "how far away" and appends to one bucket
+// advanceTo(): per tick, the level 0 bucket of that tick expires; whenever a tick crosses a level boundary,
+//              the matching bucket of the higher level is "cascaded" (its entries re-added into lower levels)
+//
+// compared to a priority queue (ScheduledThreadPoolExecutor's DelayedWorkQueue) there is no O(log n) sift,
+// every entry is moved at most LEVELS times.
+public class TimingWheel<E> {
+
+    private static final int WHEEL_BITS = 9;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    public static final long MAX_DELAY_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private static final class Node<E> {
+        final E element;
+        final long deadline;
+        Node<E> next;
+
+        Node(E element, long deadline) {
+            this.element = element;
+            this.deadline = deadline;
+        }
+    }
+
+    // [level][bucket], head + tail, so entries of one bucket stay in insertion order
+    @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation
+    private final Node<E>[][] heads = new Node[LEVELS][WHEEL_SIZE];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Node<E>[][] tails = new Node[LEVELS][WHEEL_SIZE];
+
+    private long currentTick;
+    private long pending;
+
+    public TimingWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+
+    // entries with a deadline <= current tick are handed to "expired" right away
+    public void add(E element, long deadlineTick, Consumer<E> expired) {
+        long delta = deadlineTick - currentTick;
+
+        if (delta <= 0) {
+            expired.accept(element);
+            return;
+        }
+        if (delta > MAX_DELAY_TICKS) {
+            throw new IllegalArgumentException("delay of " + delta + " ticks is more than " + MAX_DELAY_TICKS);
+        }
+
+        insert(new Node<>(element, deadlineTick));
+        pending++;
+    }
+
+    private void insert(Node<E> node) {
+        long delta = node.deadline - currentTick;
+
+        // smallest level whose range covers the delta
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        int bucket = (int) ((node.deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        node.next = null;
+
+        if (tails[level][bucket] == null) {
+            heads[level][bucket] = node;
+        } else {
+            tails[level][bucket].next = node;
+        }
+        tails[level][bucket] = node;
+    }
+
+    // moves time forward tick by tick till "tick", every due element is handed to "expired"
+    public void advanceTo(long tick, Consumer<E> expired) {
+        while (currentTick < tick) {
+            currentTick++;
+
+            // highest level first: cascaded entries may land in a lower level bucket that cascades in the same tick
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK), expired);
+                }
+            }
+
+            int bucket = (int) (currentTick & WHEEL_MASK);
+            Node<E> node = heads[0][bucket];
+            heads[0][bucket] = null;
+            tails[0][bucket] = null;
+
+            while (node != null) {
+                Node<E> next = node.next;
+                pending--;
+                expired.accept(node.element);
+                node = next;
+            }
+        }
+    }
+
+    private void cascade(int level, int bucket, Consumer<E> expired) {
+        Node<E> node = heads[level][bucket];
+        heads[level][bucket] = null;
+        tails[level][bucket] = null;
+
+        while (node != null) {
+            Node<E> next = node.next;
+
+            if (node.deadline <= currentTick) {
+                pending--;
+                expired.accept(node.element);
+            } else {
+                insert(node); // re-used, no new allocation
+            }
+            node = next;
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public long pending() {
+        return pending;
+    }
+}
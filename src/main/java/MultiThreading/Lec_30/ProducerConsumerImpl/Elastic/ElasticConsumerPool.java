@@ -0,0 +1,238 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Elastic;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Consumer threads for a SharedQueue which come and go with the load (instead of a fixed number started by hand)
+//
+// - workers poll() the queue and park for IDLE_PARK_NANOS when it's empty (the parked time counts as idle),
+//   so a retired worker notices it within a millisecond even if no message comes
+// - a controller thread samples depth, processed messages, busy / idle time and the measured time in the queue
+//   every checkInterval and applies the ScalingPolicy
+// - retiring only sets a flag: the worker finishes the message it is on, nothing is interrupted or lost
+// - a handler Error (e.g. OutOfMemoryError) nacks the message and ends its worker, the worker leaves the pool
+//   and the controller starts a replacement at its next check
+// - every change is reported as a ScalingEvent to the listener
+public class ElasticConsumerPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(Message message) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ScalingListener {
+        void onScaling(ScalingEvent event);
+    }
+
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final SharedQueue queue;
+    private final Handler handler;
+    private final ScalingPolicy policy;
+    private final ScalingListener listener;
+
+    private final List<Worker> workers = new ArrayList<>(); // guarded by itself
+    private int nextWorkerId;
+
+    // written by the workers, read and reset by the controller every check
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder idleNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong(); // messages stamped by SharedQueue metrics only
+    private final AtomicInteger lostWorkers = new AtomicInteger(); // died since the last check
+
+    private final Thread controller;
+    private volatile boolean running = true;
+    private volatile int workerCount;
+
+    public ElasticConsumerPool(SharedQueue queue, Handler handler, ScalingPolicy policy, ScalingListener listener) {
+        this.queue = queue;
+        this.handler = handler;
+        this.policy = policy;
+        this.listener = listener;
+
+        synchronized (workers) {
+            for (int i = 0; i < policy.minWorkers(); i++) {
+                startWorker();
+            }
+        }
+
+        this.controller = new Thread(this::controlLoop, "elastic-pool-controller");
+        this.controller.setDaemon(true);
+        this.controller.start();
+    }
+
+    private void controlLoop() {
+        long checkNanos = policy.checkInterval().toNanos();
+        long cooldownNanos = policy.cooldown().toNanos();
+        long lastChange = System.nanoTime();
+        int upStreak = 0;
+        int downStreak = 0;
+
+        while (running) {
+            LockSupport.parkNanos(this, checkNanos); // close() un-parks us
+            if (!running) {
+                break;
+            }
+
+            // not a scaling decision: back to the size the pool had before, no event, no cooldown
+            int lost = lostWorkers.getAndSet(0);
+            if (lost > 0) {
+                resize(workerCount + lost);
+            }
+
+            long now = System.nanoTime();
+            int depth = queue.size();
+            long done = processed.sumThenReset();
+            long busy = busyNanos.sumThenReset();
+            long idleTime = idleNanos.sumThenReset();
+            long measured = maxQueueNanos.getAndSet(0);
+            int count = workerCount;
+
+            // time a message arriving now waits: depth / (messages per nanosecond of the whole pool)
+            long estimated;
+            if (depth == 0) {
+                estimated = 0;
+            } else if (done == 0) {
+                estimated = Long.MAX_VALUE; // nothing finished at all, e.g. every worker stuck on a slow message
+            } else {
+                estimated = (long) (depth * ((double) busy / done) / count);
+            }
+            long lag = Math.max(estimated, measured);
+            double idle = busy + idleTime == 0 ? 0 : (double) idleTime / (busy + idleTime);
+
+            upStreak = policy.isLagging(lag) ? upStreak + 1 : 0;
+            downStreak = policy.isIdle(lag, idle) ? downStreak + 1 : 0;
+
+            if (now - lastChange < cooldownNanos) {
+                continue;
+            }
+
+            int target = count;
+            if (upStreak >= policy.upAfter() && count < policy.maxWorkers()) {
+                target = Math.min(policy.maxWorkers(), count + Math.max(1, count / 2));
+            } else if (downStreak >= policy.downAfter() && count > policy.minWorkers()) {
+                target = count - 1;
+            }
+
+            if (target != count) {
+                resize(target);
+                lastChange = now;
+                upStreak = 0;
+                downStreak = 0;
+
+                if (listener != null) {
+                    listener.onScaling(new ScalingEvent(System.currentTimeMillis(),
+                            target > count ? ScalingEvent.Direction.UP : ScalingEvent.Direction.DOWN,
+                            count, target, depth, lag == Long.MAX_VALUE ? -1 : lag / 1_000_000, idle));
+                }
+            }
+        }
+    }
+
+    private void resize(int target) {
+        synchronized (workers) {
+            while (workers.size() < target) {
+                startWorker();
+            }
+            while (workers.size() > target) {
+                workers.remove(workers.size() - 1).retired = true; // newest first
+            }
+            workerCount = workers.size();
+        }
+    }
+
+    private void startWorker() {
+        Worker worker = new Worker();
+        worker.thread = new Thread(worker, "elastic-consumer-" + nextWorkerId++);
+        workers.add(worker);
+        workerCount = workers.size();
+        worker.thread.start();
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    // stops the controller and retires every worker (each finishes its current message)
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(controller);
+
+        try {
+            controller.join(); // no resize() after this
+
+            List<Worker> retired;
+            synchronized (workers) {
+                retired = new ArrayList<>(workers);
+                workers.clear();
+                workerCount = 0;
+            }
+
+            for (Worker worker : retired) {
+                worker.retired = true;
+            }
+            for (Worker worker : retired) {
+                worker.thread.join();
+            }
+        } catch (InterruptedException e) {
+            // exception handling
+        }
+    }
+
+    private final class Worker implements Runnable {
+        Thread thread;
+        volatile boolean retired;
+
+        @Override
+        public void run() {
+            while (!retired) {
+                long start = System.nanoTime();
+                Message message = queue.poll();
+
+                if (message == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    idleNanos.add(System.nanoTime() - start);
+                    continue;
+                }
+
+                if (message.isStamped()) {
+                    maxQueueNanos.accumulateAndGet(start - message.enqueuedNanos(), Math::max);
+                }
+
+                try {
+                    handler.handle(message);
+                    queue.ack(message);
+                } catch (Exception e) {
+                    queue.nack(message);
+                } catch (Error e) {
+                    queue.nack(message);
+                    died();
+                    throw e;
+                }
+
+                busyNanos.add(System.nanoTime() - start);
+                processed.increment();
+            }
+        }
+
+        // a retired worker is no longer in the list, nothing to replace
+        private void died() {
+            synchronized (workers) {
+                if (workers.remove(this)) {
+                    workerCount = workers.size();
+                    lostWorkers.incrementAndGet();
+                }
+            }
+        }
+    }
+}
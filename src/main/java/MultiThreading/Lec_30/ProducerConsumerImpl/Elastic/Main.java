@@ -0,0 +1,83 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Elastic;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+// Load in phases (messages/sec), every message takes 2 ms to process (one worker: ~500 msgs/sec)
+// scaling events go to the console and to a CSV file, the worker count / depth is printed every 500 ms
+public class Main {
+
+    private static final int[][] PHASES = { // {messages/sec, seconds}
+            {300, 2},
+            {3000, 3},
+            {6000, 2},
+            {200, 4},
+            {0, 2}
+    };
+
+    public static void main(String[] args) throws Exception {
+
+        System.out.println("Main method starts...");
+
+        SharedQueue queue = new SharedQueue(64 * 1024, SharedQueue.Mode.LOCK_FREE);
+        queue.setLogging(false);
+        queue.setMetrics(true); // sampled time in the queue, the pool uses it as the measured lag
+
+        List<String> csv = new ArrayList<>();
+        csv.add(ScalingEvent.CSV_HEADER);
+
+        ElasticConsumerPool pool = new ElasticConsumerPool(queue, message -> Thread.sleep(2), ScalingPolicy.of(1, 32),
+                event -> {
+                    System.out.println("scaling: " + event);
+                    synchronized (csv) {
+                        csv.add(event.toString());
+                    }
+                });
+
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                System.out.printf("  workers: %2d, depth: %,6d%n", pool.getWorkerCount(), queue.size());
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long published = 0;
+        for (int[] phase : PHASES) {
+            System.out.println("phase: " + phase[0] + " msgs/sec for " + phase[1] + " s");
+
+            // publish in 1 ms steps, so the rate is even within the phase
+            long end = System.nanoTime() + phase[1] * 1_000_000_000L;
+            double due = 0;
+            for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                due += phase[0] / 1000.0;
+                for (; due >= 1; due--) {
+                    queue.publish("Message-" + published++);
+                }
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+
+        sampler.interrupt();
+        pool.close();
+
+        Path file = Files.createTempFile("scaling-events", ".csv");
+        synchronized (csv) {
+            Files.write(file, csv);
+        }
+        System.out.println("published: " + published + ", acked: " + queue.getAcked() + ", left in queue: " + queue.size());
+        System.out.println("scaling events: " + file);
+
+        System.out.println("Main method ends...");
+    }
+}
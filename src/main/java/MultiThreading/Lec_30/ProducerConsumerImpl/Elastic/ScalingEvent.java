@@ -0,0 +1,20 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Elastic;
+
+import java.util.Locale;
+
+// One decision of ElasticConsumerPool, toString() is a CSV line (see CSV_HEADER) for graphing
+public record ScalingEvent(long timestampMillis, Direction direction, int fromWorkers, int toWorkers,
+                           int depth, long lagMillis, double idle) {
+
+    public enum Direction {
+        UP,
+        DOWN
+    }
+
+    public static final String CSV_HEADER = "timestampMillis,direction,fromWorkers,toWorkers,depth,lagMillis,idle";
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d,%s,%d,%d,%d,%d,%.2f", timestampMillis, direction, fromWorkers, toWorkers, depth, lagMillis, idle);
+    }
+}
@@ -0,0 +1,42 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Elastic;
+
+import java.time.Duration;
+
+// When ElasticConsumerPool adds / retires workers
+//
+// - lag: how long a message arriving now would wait, estimated from depth and the current processing rate
+//   (or measured: time in the queue of messages stamped by SharedQueue metrics, whichever is larger)
+// - up:   lag > targetLag for "upAfter" checks in a row -> add workers, half the current count (at least 1)
+// - down: lag < targetLag / 4 and workers idle more than "idleThreshold" of the time for "downAfter" checks
+//         in a row -> retire 1 worker
+// - after every change nothing happens for "cooldown", the new workers need time to show in the numbers
+// the gap between the up and down conditions (and the streaks) is the hysteresis: no flapping around one value
+public record ScalingPolicy(int minWorkers, int maxWorkers, Duration checkInterval, Duration targetLag,
+                            double idleThreshold, int upAfter, int downAfter, Duration cooldown) {
+
+    public ScalingPolicy {
+        if (minWorkers < 1 || maxWorkers < minWorkers) {
+            throw new IllegalArgumentException("invalid bounds: " + minWorkers + " .. " + maxWorkers);
+        }
+        if (idleThreshold <= 0 || idleThreshold >= 1) {
+            throw new IllegalArgumentException("idleThreshold must be between 0 and 1: " + idleThreshold);
+        }
+        if (upAfter < 1 || downAfter < 1) {
+            throw new IllegalArgumentException("upAfter / downAfter must be positive: " + upAfter + " / " + downAfter);
+        }
+    }
+
+    // defaults: check every 100 ms, target lag 200 ms, scale up after 2 checks, down after 10 (slow to give back)
+    public static ScalingPolicy of(int minWorkers, int maxWorkers) {
+        return new ScalingPolicy(minWorkers, maxWorkers, Duration.ofMillis(100), Duration.ofMillis(200),
+                0.5, 2, 10, Duration.ofMillis(300));
+    }
+
+    public boolean isLagging(long lagNanos) {
+        return lagNanos > targetLag.toNanos();
+    }
+
+    public boolean isIdle(long lagNanos, double idle) {
+        return lagNanos < targetLag.toNanos() / 4 && idle > idleThreshold;
+    }
+}
@@ -0,0 +1,109 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Ipc;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Metrics.LatencyHistogram;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.BusySpinWaitStrategy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.SpinThenYieldWaitStrategy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.WaitStrategy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// 2 JVMs: this one starts a second one ("echo" mode) and talks to it through 2 SharedMemoryQueues
+//   ping (this -> echo) and pong (echo -> this)
+//
+// - latency: ping-pong, one-way hand-off = round trip / 2 (System.nanoTime() is only compared inside this process)
+// - throughput: stream of messages to the echo process, it answers once at the end
+//
+// Busy spinning needs a free core per spinning process: with less than 2 cores both sides yield instead
+// (the hand-off then includes a context switch, i.e. microseconds instead of nanoseconds)
+public class Main {
+
+    private static final int CAPACITY = 1024;
+    private static final int SLOT_SIZE = 128;
+    private static final int WARMUP = 100_000;
+    private static final int ROUND_TRIPS = 200_000;
+    private static final int STREAM = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("echo")) {
+            echo(Path.of(args[1]));
+            return;
+        }
+
+        System.out.println("Main method starts...");
+
+        Path directory = Files.createTempDirectory(SharedMemoryQueue.defaultDirectory(), "lec30-ipc-");
+        SharedMemoryQueue ping = SharedMemoryQueue.create(directory.resolve("ping"), CAPACITY, SLOT_SIZE, false, waitStrategy());
+        SharedMemoryQueue pong = SharedMemoryQueue.create(directory.resolve("pong"), CAPACITY, SLOT_SIZE, false, waitStrategy());
+        System.out.println("queues in: " + directory + ", wait strategy: " + waitStrategy().getClass().getSimpleName());
+
+        Process echo = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(), "echo", directory.toString())
+                .inheritIO()
+                .start();
+
+        // latency
+        for (int i = 0; i < WARMUP; i++) {
+            ping.publish("p");
+            pong.consume();
+        }
+
+        LatencyHistogram oneWay = new LatencyHistogram();
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            long start = System.nanoTime();
+            ping.publish("p");
+            pong.consume();
+            oneWay.record((System.nanoTime() - start) / 2);
+        }
+        System.out.println("one-way hand-off (ns): " + oneWay.snapshot());
+
+        // throughput
+        long start = System.nanoTime();
+        for (int i = 0; i < STREAM; i++) {
+            ping.publish("s");
+        }
+        ping.publish("d");
+        pong.consume(); // echo process has read everything
+        long nanos = System.nanoTime() - start;
+        System.out.printf("stream: %,d messages in %d ms (%,.0f msgs/sec)%n", STREAM, nanos / 1_000_000, STREAM / (nanos / 1e9));
+
+        ping.publish("x");
+        echo.waitFor();
+
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+
+        System.out.println("Main method ends...");
+    }
+
+    // the other JVM: answers every "p", counts "s", answers "d" once the stream is read, stops on "x"
+    private static void echo(Path directory) throws Exception {
+        SharedMemoryQueue ping = SharedMemoryQueue.open(directory.resolve("ping"), false, waitStrategy());
+        SharedMemoryQueue pong = SharedMemoryQueue.open(directory.resolve("pong"), false, waitStrategy());
+
+        long streamed = 0;
+        while (true) {
+            String data = ping.consume().data();
+
+            switch (data) {
+                case "p" -> pong.publish("p");
+                case "s" -> streamed++;
+                case "d" -> pong.publish("d");
+                default -> {
+                    System.out.println("echo process: done, " + streamed + " stream messages");
+                    return;
+                }
+            }
+        }
+    }
+
+    private static WaitStrategy waitStrategy() {
+        return Runtime.getRuntime().availableProcessors() >= 2 ? new BusySpinWaitStrategy() : new SpinThenYieldWaitStrategy();
+    }
+}
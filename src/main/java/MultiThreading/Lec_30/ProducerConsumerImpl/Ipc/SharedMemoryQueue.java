@@ -0,0 +1,230 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Ipc;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageIdGenerator;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.WaitStrategy;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+
+// Producer / consumer queue between processes (JVMs) on the same host: a ring in a memory-mapped file
+//
+// Same design as RingBuffer (Vyukov), only the memory is a file mapped by both processes instead of a Java array:
+// - every slot starts with its own sequence number: "pos" = free for the producer of round pos,
+//   "pos + 1" = filled for the consumer of round pos
+// - sequences / tail / head are accessed through a VarHandle view of the MappedByteBuffer with acquire / release
+//   (same ordering guarantees as volatile fields, but on shared memory, so they also hold across processes)
+// - single producer: tail is only written with a release store; multi producer: tail is claimed with a CAS
+// - single consumer only (head is owned by the consumer process)
+// - no lock / monitor exists across processes, so waiting is always a WaitStrategy (spin / yield / park)
+//
+// File layout (native byte order, every counter on its own 128 bytes, i.e. also away from the adjacent-line prefetcher):
+//   0:    long magic (written last, "file is ready") | int capacity | int slotSize
+//   128:  long tail  (next position to publish)
+//   256:  long head  (next position to consume)
+//   384:  slots, each: | long sequence | int length | int (unused) | long ID | payload (UTF-8) |
+public class SharedMemoryQueue {
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final long MAGIC = 0x4C656333305F5151L; // "Lec30_QQ"
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SLOT_SIZE_OFFSET = 12;
+    private static final int TAIL_OFFSET = 128;
+    private static final int HEAD_OFFSET = 256;
+    private static final int DATA_OFFSET = 384;
+
+    private static final int SLOT_HEADER = 24;
+    private static final int LENGTH_OFFSET = 8; // inside a slot
+    private static final int ID_OFFSET = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int slotSize;
+    private final boolean multiProducer;
+
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier notFullCheck;  // created once, so waiting doesn't allocate
+    private final BooleanSupplier notEmptyCheck;
+
+    private long head; // consumer side only: its own copy, so it doesn't read shared memory to find its slot
+
+    private SharedMemoryQueue(MappedByteBuffer buffer, boolean multiProducer, WaitStrategy waitStrategy) {
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.mask = capacity - 1;
+        this.slotSize = buffer.getInt(SLOT_SIZE_OFFSET);
+        this.multiProducer = multiProducer;
+        this.waitStrategy = waitStrategy;
+        this.head = (long) LONG.getAcquire(buffer, HEAD_OFFSET);
+
+        this.notFullCheck = () -> {
+            long pos = (long) LONG.getAcquire(buffer, TAIL_OFFSET);
+            return (long) LONG.getAcquire(buffer, slotOffset(pos)) == pos;
+        };
+        this.notEmptyCheck = () -> (long) LONG.getAcquire(buffer, slotOffset(head)) == head + 1;
+    }
+
+    // /dev/shm (RAM, never written to disk) when it exists, the temp dir otherwise
+    public static Path defaultDirectory() {
+        Path shm = Path.of("/dev/shm");
+        return Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    // capacity: power of two; slotSize: multiple of 8, payload may use slotSize - 24 bytes
+    // the file is prepared under a temporary name and then renamed, so open() never sees a half initialized file
+    public static SharedMemoryQueue create(Path file, int capacity, int slotSize, boolean multiProducer,
+                                           WaitStrategy waitStrategy) throws IOException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        if (slotSize <= SLOT_HEADER || slotSize % Long.BYTES != 0) {
+            throw new IllegalArgumentException("slotSize must be a multiple of 8 and larger than " + SLOT_HEADER + ": " + slotSize);
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long size = DATA_OFFSET + (long) capacity * slotSize;
+        MappedByteBuffer buffer = map(tmp, size);
+
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+        for (int i = 0; i < capacity; i++) {
+            LONG.setRelease(buffer, DATA_OFFSET + i * slotSize, (long) i); // slot i is free for position i
+        }
+        LONG.setRelease(buffer, TAIL_OFFSET, 0L);
+        LONG.setRelease(buffer, HEAD_OFFSET, 0L);
+        LONG.setRelease(buffer, 0, MAGIC);
+
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new SharedMemoryQueue(buffer, multiProducer, waitStrategy);
+    }
+
+    // attaches to a queue created (by another process) with create(), waits till the file exists
+    public static SharedMemoryQueue open(Path file, boolean multiProducer, WaitStrategy waitStrategy) throws IOException {
+        while (!Files.exists(file)) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+
+        MappedByteBuffer buffer = map(file, Files.size(file));
+        if ((long) LONG.getAcquire(buffer, 0) != MAGIC) {
+            throw new IOException("not a shared memory queue: " + file);
+        }
+        return new SharedMemoryQueue(buffer, multiProducer, waitStrategy);
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+    }
+
+    private int slotOffset(long pos) {
+        return DATA_OFFSET + (int) (pos & mask) * slotSize;
+    }
+
+    // returns false when the queue is full (never waits)
+    public boolean offer(String data) {
+        byte[] payload = data.getBytes(StandardCharsets.UTF_8);
+        if (payload.length > slotSize - SLOT_HEADER) {
+            throw new IllegalArgumentException("payload of " + payload.length + " bytes doesn't fit in slot of " + (slotSize - SLOT_HEADER));
+        }
+
+        long pos = (long) LONG.getAcquire(buffer, TAIL_OFFSET);
+
+        while (true) {
+            int slot = slotOffset(pos);
+            long diff = (long) LONG.getAcquire(buffer, slot) - pos;
+
+            if (diff == 0) {
+                // single producer: nobody else moves tail, no CAS needed
+                if (!multiProducer) {
+                    LONG.setRelease(buffer, TAIL_OFFSET, pos + 1);
+                } else if (!LONG.compareAndSet(buffer, TAIL_OFFSET, pos, pos + 1)) {
+                    pos = (long) LONG.getAcquire(buffer, TAIL_OFFSET); // lost the race to another producer
+                    continue;
+                }
+
+                buffer.putInt(slot + LENGTH_OFFSET, payload.length);
+                buffer.putLong(slot + ID_OFFSET, MessageIdGenerator.DEFAULT.nextId());
+                buffer.put(slot + SLOT_HEADER, payload);
+
+                // release: the consumer which sees this sequence also sees the payload above
+                LONG.setRelease(buffer, slot, pos + 1);
+                return true;
+            } else if (diff < 0) {
+                return false; // slot still holds the message of the previous round
+            } else {
+                pos = (long) LONG.getAcquire(buffer, TAIL_OFFSET);
+            }
+        }
+    }
+
+    public void publish(String data) {
+        while (!offer(data)) {
+            try {
+                waitStrategy.waitFor(notFullCheck);
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+    }
+
+    // returns null when the queue is empty (never waits), single consumer only
+    public Message poll() {
+        int slot = slotOffset(head);
+        if ((long) LONG.getAcquire(buffer, slot) != head + 1) {
+            return null;
+        }
+
+        byte[] payload = new byte[buffer.getInt(slot + LENGTH_OFFSET)];
+        long ID = buffer.getLong(slot + ID_OFFSET);
+        buffer.get(slot + SLOT_HEADER, payload);
+
+        // free the slot for the producer of the next round, then move head (after the payload is copied)
+        LONG.setRelease(buffer, slot, head + capacity);
+        head++;
+        LONG.setRelease(buffer, HEAD_OFFSET, head);
+
+        return new Message(new String(payload, StandardCharsets.UTF_8), ID);
+    }
+
+    public Message consume() {
+        Message message;
+        while ((message = poll()) == null) {
+            try {
+                waitStrategy.waitFor(notEmptyCheck);
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+        return message;
+    }
+
+    // only an estimate while producer / consumer are running
+    public int size() {
+        long size = (long) LONG.getAcquire(buffer, TAIL_OFFSET) - (long) LONG.getAcquire(buffer, HEAD_OFFSET);
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
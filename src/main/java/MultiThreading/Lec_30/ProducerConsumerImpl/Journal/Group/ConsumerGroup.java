@@ -0,0 +1,248 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Journal.Group;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Journal.JournalQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Journal.JournalReader;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Several consumer threads sharing one JournalReader: nothing is removed when it's read, progress is an offset
+//
+// - consumers lease batches of messages (offset range + messages), process them and ack() the batch
+// - committed offset = start of the oldest batch not acked yet (everything before it is processed)
+// - a committer thread writes (and forces) that offset once per "commitInterval": 1 disk sync per interval,
+//   not per message or batch, ack() itself is only a flag under the group lock
+// - a batch whose owner died or held it longer than "leaseTimeout" is handed to the next lease() again;
+//   after a restart everything from the committed offset is delivered again
+// - both can deliver a message twice, the IdempotencyFilter makes sure it is processed once
+public class ConsumerGroup implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(Message message) throws Exception;
+    }
+
+    private final JournalReader reader;
+    private final int batchSize;
+    private final long leaseTimeoutNanos;
+    private final long commitIntervalNanos;
+    private final IdempotencyFilter filter;
+
+    // guarded by "this"
+    private final TreeMap<Long, Batch> inFlight = new TreeMap<>(); // start offset -> batch, in journal order
+    private final ArrayDeque<Batch> redeliveries = new ArrayDeque<>();
+
+    private volatile long committed;
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder redelivered = new LongAdder(); // batches
+
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    public ConsumerGroup(JournalQueue journal, String name, int batchSize, Duration leaseTimeout,
+                         Duration commitInterval, IdempotencyFilter filter) throws IOException {
+        this.reader = journal.openReader(name);
+        this.batchSize = batchSize;
+        this.leaseTimeoutNanos = leaseTimeout.toNanos();
+        this.commitIntervalNanos = commitInterval.toNanos();
+        this.filter = filter;
+        this.committed = reader.getCommittedPosition();
+
+        this.committer = new Thread(this::commitLoop, "group-committer-" + name);
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    // returns null when there is nothing to do (never waits)
+    public synchronized Batch lease() {
+        Batch batch;
+        while ((batch = redeliveries.poll()) != null) {
+            if (!batch.done) { // the old owner may have finished it after all
+                batch.lease(leaseTimeoutNanos);
+                return batch;
+            }
+        }
+
+        long start = reader.getPosition();
+        List<Message> messages = new ArrayList<>(batchSize);
+        Message message;
+        while (messages.size() < batchSize && (message = reader.poll()) != null) {
+            messages.add(message);
+        }
+
+        if (messages.isEmpty()) {
+            return null;
+        }
+
+        batch = new Batch(start, messages);
+        batch.lease(leaseTimeoutNanos);
+        inFlight.put(start, batch);
+        return batch;
+    }
+
+    // no I/O here, the committer moves the offset
+    public synchronized void ack(Batch batch) {
+        batch.done = true;
+    }
+
+    // processing failed: give the batch to the next lease() (only its current owner can)
+    public synchronized void release(Batch batch) {
+        if (!batch.done && batch.owner == Thread.currentThread()) {
+            batch.owner = null;
+            redeliveries.add(batch);
+            redelivered.increment();
+        }
+    }
+
+    // body of a consumer thread: runs till close()
+    // a Handler exception redelivers the batch, an Error (e.g. OutOfMemoryError) ends the thread and
+    // the committer redelivers its batch once it notices the thread is gone
+    public void consume(Handler handler) {
+        while (running) {
+            Batch batch = lease();
+            if (batch == null) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                // a redelivered batch continues where the previous owner got to, the filter covers the message
+                // it was busy with (and IDs completed while 2 owners race through the rest)
+                for (int i = batch.progress; i < batch.messages.size(); i++) {
+                    Message message = batch.messages.get(i);
+
+                    boolean claimed;
+                    try {
+                        claimed = filter.tryClaim(message.ID());
+                    } catch (InterruptedException e) {
+                        release(batch); // interrupted while waiting for the message's previous owner
+                        return;
+                    }
+
+                    if (claimed) {
+                        try {
+                            handler.handle(message);
+                        } catch (Exception e) {
+                            filter.release(message.ID());
+                            throw e;
+                        }
+                        filter.complete(message.ID());
+                    }
+
+                    if (i + 1 > batch.progress) {
+                        batch.progress = i + 1;
+                    }
+                }
+                ack(batch);
+            } catch (Exception e) {
+                release(batch);
+            }
+        }
+    }
+
+    private void commitLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, commitIntervalNanos); // close() un-parks us
+            commit();
+        }
+        commit();
+    }
+
+    private void commit() {
+        long position;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+
+            for (Batch batch : inFlight.values()) {
+                if (!batch.done && batch.owner != null && (!batch.owner.isAlive() || now - batch.deadline > 0)) {
+                    batch.owner = null;
+                    redeliveries.add(batch);
+                    redelivered.increment();
+                }
+            }
+
+            while (!inFlight.isEmpty() && inFlight.firstEntry().getValue().done) {
+                inFlight.pollFirstEntry();
+            }
+            position = inFlight.isEmpty() ? reader.getPosition() : inFlight.firstKey();
+        }
+
+        // the disk sync happens outside the lock, consumers keep leasing / acking meanwhile
+        // (commit(long) doesn't touch the state poll() uses, see JournalReader)
+        if (position != committed) {
+            reader.commit(position);
+            committed = position;
+            commits.increment();
+        }
+    }
+
+    public long getCommittedPosition() {
+        return committed;
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    public long getRedeliveredBatches() {
+        return redelivered.sum();
+    }
+
+    public IdempotencyFilter getFilter() {
+        return filter;
+    }
+
+    // stops the consumer loops, commits one last time
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(committer);
+
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            // exception handling
+        }
+    }
+
+    public static final class Batch {
+        private final long start;
+        private final List<Message> messages;
+
+        // guarded by the group
+        private Thread owner;
+        private long deadline;
+        private boolean done;
+        private volatile int progress; // messages before it are completed
+
+        private Batch(long start, List<Message> messages) {
+            this.start = start;
+            this.messages = messages;
+        }
+
+        private void lease(long timeoutNanos) {
+            owner = Thread.currentThread();
+            deadline = System.nanoTime() + timeoutNanos;
+        }
+
+        public long start() {
+            return start;
+        }
+
+        public List<Message> messages() {
+            return messages;
+        }
+    }
+}
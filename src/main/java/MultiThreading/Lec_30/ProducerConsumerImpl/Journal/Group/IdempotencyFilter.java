@@ -0,0 +1,101 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Journal.Group;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Suppresses duplicate processing of redelivered messages by their ID (the idempotency key)
+//
+// Every ID is either claimed (by the thread processing it right now) or completed:
+// - tryClaim(): true = process it, false = already completed (a duplicate)
+//     - claimed by a dead thread (consumer died mid-processing): taken over
+//     - claimed by a live thread (lease expired, old owner still busy): waits till it completes or releases it,
+//       parked with a growing backoff (the old owner may be busy for a whole handler call, not a few ns)
+// - complete() after processing, release() when processing failed (message can be claimed again)
+//
+// Only the last "capacity" completed IDs are kept: ConsumerGroup redelivers a batch from the first message its
+// previous owner didn't complete, so the window only has to cover the messages in flight. Across restarts the
+// application seeds the filter with markCompleted() from wherever it stores its results (the side effect and
+// its ID in one transaction).
+public class IdempotencyFilter {
+
+    private static final Object COMPLETED = new Object();
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int capacity;
+    private final ConcurrentHashMap<Long, Object> states = new ConcurrentHashMap<>(); // ID -> owner thread / COMPLETED
+    private final ConcurrentLinkedQueue<Long> completedOrder = new ConcurrentLinkedQueue<>(); // oldest first
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final LongAdder duplicates = new LongAdder();
+
+    public IdempotencyFilter(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // InterruptedException: given up while waiting for a live owner, the ID is not claimed
+    public boolean tryClaim(long ID) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        long backoffNanos = MIN_BACKOFF_NANOS;
+
+        while (true) {
+            Object state = states.putIfAbsent(ID, current);
+
+            if (state == null || state == current) {
+                return true;
+            }
+            if (state == COMPLETED) {
+                duplicates.increment();
+                return false;
+            }
+
+            Thread owner = (Thread) state;
+            if (!owner.isAlive()) {
+                if (states.replace(ID, owner, current)) {
+                    return true;
+                }
+            } else {
+                // parkNanos() returns at once for an interrupted thread, checked before every park
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(this, backoffNanos);
+                backoffNanos = Math.min(backoffNanos * 2, MAX_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    public void complete(long ID) {
+        markCompleted(ID);
+    }
+
+    public void release(long ID) {
+        states.remove(ID, Thread.currentThread());
+    }
+
+    public void markCompleted(long ID) {
+        if (states.put(ID, COMPLETED) == COMPLETED) {
+            return;
+        }
+
+        completedOrder.add(ID);
+        if (completedCount.incrementAndGet() > capacity) {
+            Long oldest = completedOrder.poll();
+            if (oldest != null) {
+                states.remove(oldest, COMPLETED);
+                completedCount.decrementAndGet();
+            }
+        }
+    }
+
+    public boolean isCompleted(long ID) {
+        return states.get(ID) == COMPLETED;
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+}
@@ -0,0 +1,92 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Journal.Group;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Journal.JournalQueue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// 4 consumers in one group on a journal:
+// - consumer 0 dies in the middle of a batch (an Error ends its thread)
+// - consumer 1 once takes longer than the lease timeout (its batch goes to another consumer meanwhile)
+// at the end every message must have been processed exactly once
+public class Main {
+
+    private static final int MESSAGES = 200_000;
+    private static final int CONSUMERS = 4;
+
+    public static void main(String[] args) throws Exception {
+
+        System.out.println("Main method starts...");
+
+        Path directory = Files.createTempDirectory("journal-group");
+        AtomicIntegerArray timesProcessed = new AtomicIntegerArray(MESSAGES);
+
+        try (JournalQueue journal = new JournalQueue(directory, 16 * 1024 * 1024, 0)) {
+            for (int i = 0; i < MESSAGES; i++) {
+                journal.publish("Message-" + i);
+            }
+
+            ConsumerGroup group = new ConsumerGroup(journal, "group-1", 100,
+                    Duration.ofMillis(200), Duration.ofMillis(10), new IdempotencyFilter(64 * 1024));
+
+            long start = System.nanoTime();
+            Thread[] consumers = new Thread[CONSUMERS];
+            for (int c = 0; c < CONSUMERS; c++) {
+                int consumer = c;
+                long[] handled = new long[1];
+
+                consumers[c] = new Thread(() -> group.consume(message -> {
+                    handled[0]++;
+                    if (consumer == 0 && handled[0] == 20_000) {
+                        throw new Error("consumer 0 died"); // ends the thread, half of its batch is processed
+                    }
+                    if (consumer == 1 && handled[0] == 30_000) {
+                        Thread.sleep(500); // lease expires while it's still busy
+                    }
+
+                    timesProcessed.incrementAndGet(Integer.parseInt(message.data(), 8, message.data().length(), 10));
+                }), "consumer-" + c);
+
+                consumers[c].setUncaughtExceptionHandler((thread, e) -> System.out.println(thread.getName() + ": " + e.getMessage()));
+                consumers[c].start();
+            }
+
+            // everything processed and acked
+            while (group.getCommittedPosition() < journal.getWritePosition()) {
+                Thread.sleep(1);
+            }
+            long nanos = System.nanoTime() - start;
+            group.close();
+            for (Thread consumer : consumers) {
+                consumer.join();
+            }
+
+            int missing = 0;
+            int duplicated = 0;
+            for (int i = 0; i < MESSAGES; i++) {
+                if (timesProcessed.get(i) == 0) {
+                    missing++;
+                } else if (timesProcessed.get(i) > 1) {
+                    duplicated++;
+                }
+            }
+
+            System.out.printf("%,d messages in %d ms (%,.0f msgs/sec), %d offset commits (1 disk sync each)%n",
+                    MESSAGES, nanos / 1_000_000, MESSAGES / (nanos / 1e9), group.getCommits());
+            System.out.println("redelivered batches: " + group.getRedeliveredBatches()
+                    + ", duplicates suppressed: " + group.getFilter().getDuplicates());
+            System.out.println("processed twice: " + duplicated + ", never processed: " + missing);
+        }
+
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+
+        System.out.println("Main method ends...");
+    }
+}
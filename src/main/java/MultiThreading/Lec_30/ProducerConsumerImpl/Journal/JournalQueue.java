@@ -0,0 +1,260 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Journal;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageIdGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Durable version of the producer / consumer queue: messages are appended to memory-mapped journal files
+// (instead of the Message[] of FixedSizeQueue), so they survive a restart.
+//
+// Layout on disk (inside "directory"):
+//   segment-00000.log, segment-00001.log, ...  fixed size files, pre-allocated (zero filled)
+//   <reader name>.offset                        8 bytes: committed position of that reader
+//
+// Record: | int size | int CRC32C | long ID | "size - 1" bytes of UTF-8 data |
+//   - size = data length + 1, so an empty message is a record too: size 0 only means "no record here"
+//   - size is written last, so a half written record (crash) usually looks like "end of data" (size 0)
+//   - the CRC (of ID + data) catches the rest: force() may persist the page with the size but not the one
+//     with the data, after a power loss that record has a valid size and garbage behind it. Recovery and
+//     readers stop at the first mismatch and the journal is truncated there
+//   - a record never spans 2 segments, when it doesn't fit the writer moves to the next segment and
+//     readers do the same when they find size 0 before the write position
+//
+// Position = segment index * segmentSize + offset inside the segment (a single long, easy to commit)
+public class JournalQueue implements AutoCloseable {
+
+    private static final int HEADER = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int CRC_OFFSET = Integer.BYTES;
+    private static final int ID_OFFSET = Integer.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int syncEveryRecords; // force() to disk after this many appends, 0 = leave it to the OS
+
+    private final Map<Integer, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> channels = new ConcurrentHashMap<>();
+
+    private volatile long writePosition; // readers only read below this (volatile = records before it are visible)
+    private int unsyncedRecords;
+    private int dirtyFrom = -1; // unsynced records are in segments dirtyFrom..dirtyTo, -1 = none
+    private int dirtyTo = -1;
+
+    public JournalQueue(Path directory, int segmentSize, int syncEveryRecords) throws IOException {
+        if (segmentSize <= HEADER) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEveryRecords = syncEveryRecords;
+
+        Files.createDirectories(directory);
+        this.writePosition = recoverWritePosition();
+    }
+
+    // only the last segment is scanned: records are read till the first size 0, the first size which can't be
+    // a record or the first CRC mismatch (torn / garbage tail), new records overwrite whatever is behind it
+    private long recoverWritePosition() throws IOException {
+        int lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("segment-") && name.endsWith(".log"))
+                    .mapToInt(name -> Integer.parseInt(name.substring(8, name.length() - 4)))
+                    .max()
+                    .orElse(0);
+        }
+
+        MappedByteBuffer segment = segment(lastSegment);
+        int offset = 0;
+
+        while (offset + HEADER <= segmentSize) {
+            int length = segment.getInt(offset) - 1;
+            if (length < 0 || offset + HEADER + length > segmentSize || readPayload(segment, offset, length) == null) {
+                break;
+            }
+            offset += HEADER + length;
+        }
+
+        return (long) lastSegment * segmentSize + offset;
+    }
+
+    public synchronized long publish(String data) {
+        byte[] payload = data.getBytes(StandardCharsets.UTF_8);
+        int recordSize = HEADER + payload.length;
+
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("message of " + payload.length + " bytes doesn't fit in a segment");
+        }
+
+        long position = writePosition;
+        int offset = (int) (position % segmentSize);
+
+        // doesn't fit into the rest of this segment: continue at the start of the next one
+        if (offset + recordSize > segmentSize) {
+            position += segmentSize - offset;
+            offset = 0;
+        }
+
+        long ID = MessageIdGenerator.DEFAULT.nextId();
+        int index = (int) (position / segmentSize);
+        MappedByteBuffer segment = segment(index);
+
+        // moving on to the next segment: the unsynced records of the previous one must not be left behind
+        if (syncEveryRecords > 0 && dirtyFrom >= 0 && dirtyTo != index) {
+            forceDirty();
+        }
+
+        segment.putLong(offset + ID_OFFSET, ID);
+        segment.putInt(offset + CRC_OFFSET, checksum(ID, payload));
+        segment.put(offset + HEADER, payload);
+        segment.putInt(offset, payload.length + 1); // last: makes the record complete
+
+        if (dirtyFrom < 0) {
+            dirtyFrom = index;
+        }
+        dirtyTo = index;
+        if (syncEveryRecords > 0 && ++unsyncedRecords >= syncEveryRecords) {
+            forceDirty();
+        }
+
+        writePosition = position + recordSize;
+        return ID;
+    }
+
+    // forces every segment with unsynced records (not just the one at writePosition: with syncEveryRecords 0
+    // they may span segments, and a record ending exactly at a segment boundary puts writePosition into the
+    // next, still empty segment)
+    public synchronized void sync() {
+        forceDirty();
+    }
+
+    private void forceDirty() {
+        if (dirtyFrom >= 0) {
+            for (int i = dirtyFrom; i <= dirtyTo; i++) {
+                segment(i).force();
+            }
+        }
+        dirtyFrom = -1;
+        dirtyTo = -1;
+        unsyncedRecords = 0;
+    }
+
+    // a reader continues from the position it committed the last time (0 for a new name)
+    public JournalReader openReader(String name) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(name + ".offset"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer offsetFile = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        channel.close(); // mapping stays valid after the channel is closed
+
+        return new JournalReader(this, offsetFile);
+    }
+
+    // called by JournalReader, returns null when "position" is already at the write position
+    Message read(long[] position) {
+        while (true) {
+            long pos = position[0];
+            if (pos >= writePosition) {
+                return null;
+            }
+
+            int offset = (int) (pos % segmentSize);
+            MappedByteBuffer segment = segment((int) (pos / segmentSize));
+            int size = offset + HEADER <= segmentSize ? segment.getInt(offset) : 0;
+
+            // writer moved on to the next segment
+            if (size == 0) {
+                position[0] = pos + (segmentSize - offset);
+                continue;
+            }
+
+            int length = size - 1;
+            byte[] payload = length >= 0 && offset + HEADER + length <= segmentSize
+                    ? readPayload(segment, offset, length)
+                    : null;
+            if (payload == null) {
+                truncate(pos);
+                return null;
+            }
+
+            position[0] = pos + HEADER + length;
+            return new Message(new String(payload, StandardCharsets.UTF_8), segment.getLong(offset + ID_OFFSET));
+        }
+    }
+
+    // null = CRC mismatch
+    private static byte[] readPayload(MappedByteBuffer segment, int offset, int length) {
+        byte[] payload = new byte[length];
+        segment.get(offset + HEADER, payload);
+
+        long ID = segment.getLong(offset + ID_OFFSET);
+        return segment.getInt(offset + CRC_OFFSET) == checksum(ID, payload) ? payload : null;
+    }
+
+    private static int checksum(long ID, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (ID >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // a corrupt record below the write position (the journal was damaged after recovery checked it): the
+    // journal ends there, the next publish overwrites it. Records behind it are lost, same as after recovery
+    private synchronized void truncate(long position) {
+        if (position >= writePosition) {
+            return;
+        }
+
+        int offset = (int) (position % segmentSize);
+        segment((int) (position / segmentSize)).putInt(offset, 0);
+        writePosition = position;
+    }
+
+    int syncEveryRecords() {
+        return syncEveryRecords;
+    }
+
+    public long getWritePosition() {
+        return writePosition;
+    }
+
+    private MappedByteBuffer segment(int index) {
+        return segments.computeIfAbsent(index, i -> {
+            Path file = directory.resolve(String.format("segment-%05d.log", i));
+
+            try {
+                FileChannel channel = FileChannel.open(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channels.put(i, channel);
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+
+        for (FileChannel channel : channels.values()) {
+            channel.close();
+        }
+        channels.clear();
+        segments.clear(); // mappings are released by GC (no unmap API before Java 22's Arena)
+    }
+}
@@ -0,0 +1,62 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Journal;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.nio.MappedByteBuffer;
+
+// One consumer of a JournalQueue (not thread-safe, one thread per reader; the only exception is commit(long),
+// see there)
+//
+// Reading doesn't remove anything (unlike FixedSizeQueue.pop()), the reader only moves its own position.
+// commit() stores the position in "<name>.offset", after a restart the reader continues from there,
+// i.e. messages read but not committed are delivered again.
+public class JournalReader {
+
+    private final JournalQueue journal;
+    private final MappedByteBuffer offsetFile;
+    private final long[] position = new long[1];
+    private int uncommitted;
+
+    JournalReader(JournalQueue journal, MappedByteBuffer offsetFile) {
+        this.journal = journal;
+        this.offsetFile = offsetFile;
+        this.position[0] = offsetFile.getLong(0);
+    }
+
+    // returns null when there is nothing new (never waits)
+    public Message poll() {
+        Message message = journal.read(position);
+        if (message != null) {
+            uncommitted++;
+        }
+        return message;
+    }
+
+    // a plain write into the mapped offset file, forced to disk with the same batching as the journal
+    public void commit() {
+        offsetFile.putLong(0, position[0]);
+
+        int syncEvery = journal.syncEveryRecords();
+        if (syncEvery > 0 && uncommitted >= syncEvery) {
+            offsetFile.force();
+            uncommitted = 0;
+        }
+    }
+
+    // commits an older position than the read position, e.g. the oldest message still being processed by
+    // a consumer group; always forced to disk, so call it once per batch / interval, not per message
+    // only touches the offset file, never the read state: one other thread may call it while poll() runs
+    // (ConsumerGroup's committer), as long as it is the only one committing
+    public void commit(long position) {
+        offsetFile.putLong(0, position);
+        offsetFile.force();
+    }
+
+    public long getPosition() {
+        return position[0];
+    }
+
+    public long getCommittedPosition() {
+        return offsetFile.getLong(0);
+    }
+}
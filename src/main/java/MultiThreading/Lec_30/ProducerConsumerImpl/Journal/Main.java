@@ -0,0 +1,104 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Journal;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class Main {
+
+    private static final int MESSAGES = 1_000_000;
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int SYNC_EVERY = 10_000;
+
+    public static void main(String[] args) throws Exception {
+
+        System.out.println("Main method starts...");
+
+        Path directory = Files.createTempDirectory("journal-queue");
+        System.out.println("journal directory: " + directory);
+
+        // 1. producer + consumer running at the same time, consumer stops (crashes) half way
+        long start = System.nanoTime();
+        long consumedBeforeCrash;
+
+        try (JournalQueue journal = new JournalQueue(directory, SEGMENT_SIZE, SYNC_EVERY)) {
+            JournalReader reader = journal.openReader("consumer-1");
+
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < MESSAGES; i++) {
+                    journal.publish("Message-" + i);
+                }
+            });
+            producer.start();
+
+            consumedBeforeCrash = consume(reader, MESSAGES / 2);
+            producer.join();
+        }
+
+        double journalRate = MESSAGES / ((System.nanoTime() - start) / 1e9);
+        System.out.printf("journal: %,.0f msgs/sec (published %,d, consumed %,d before restart)%n",
+                journalRate, MESSAGES, consumedBeforeCrash);
+
+        // 2. "restart": new JournalQueue on the same directory, reader continues from its committed position
+        try (JournalQueue journal = new JournalQueue(directory, SEGMENT_SIZE, SYNC_EVERY)) {
+            JournalReader reader = journal.openReader("consumer-1");
+            System.out.println("after restart, reader resumes at position: " + reader.getPosition());
+
+            Message first = reader.poll();
+            System.out.println("first message after restart: " + first.data());
+
+            long rest = 1 + consume(reader, MESSAGES);
+            System.out.printf("consumed after restart: %,d (total %,d)%n", rest, consumedBeforeCrash + rest);
+        }
+
+        // 3. same load on the in-memory queue, for comparison
+        SharedQueue queue = new SharedQueue(1024, SharedQueue.Mode.LOCK_FREE);
+        queue.setLogging(false);
+
+        start = System.nanoTime();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                queue.publish("Message-" + i);
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < MESSAGES; i++) {
+            queue.consume();
+        }
+        producer.join();
+
+        System.out.printf("in-memory (LOCK_FREE): %,.0f msgs/sec%n", MESSAGES / ((System.nanoTime() - start) / 1e9));
+        System.out.println("Main method ends...");
+    }
+
+    // reads till "max" messages (or till the journal has nothing more for a while), commits in batches
+    private static long consume(JournalReader reader, long max) throws InterruptedException {
+        long count = 0;
+        int idle = 0;
+
+        while (count < max && idle < 100) {
+            Message message = reader.poll();
+
+            if (message == null) {
+                idle++;
+                Thread.sleep(1);
+                continue;
+            }
+
+            idle = 0;
+            count++;
+
+            // commit once per 1000 messages, not per message
+            if (count % 1000 == 0) {
+                reader.commit();
+            }
+        }
+
+        reader.commit();
+        return count;
+    }
+}
@@ -0,0 +1,103 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Logging;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.RingBuffer;
+
+import java.io.PrintStream;
+import java.util.Formatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Asynchronous log sink: the calling thread only puts (format, args) into a lock-free RingBuffer,
+// a background (daemon) thread formats the events and writes them with one print() per batch.
+//
+// - a producer / consumer holding the queue's lock never formats a string or takes the PrintStream's lock
+// - when the buffer is full, events are dropped (and counted) instead of blocking the caller
+public class AsyncLogSink implements LogSink, AutoCloseable {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private record LogEvent(String format, Object[] args) {
+    }
+
+    private final PrintStream out;
+    private final RingBuffer<LogEvent> buffer;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+
+    public AsyncLogSink(PrintStream out, int capacity) {
+        this.out = out;
+        this.buffer = new RingBuffer<>(capacity);
+        this.writer = new Thread(this::writeLoop, "async-log-writer");
+        this.writer.setDaemon(true); // must not keep the JVM alive
+        this.writer.start();
+    }
+
+    // lazily created, flushed at JVM shutdown
+    public static AsyncLogSink getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    @Override
+    public void log(String format, Object... args) {
+        if (!buffer.offer(new LogEvent(format, args))) {
+            dropped.increment();
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // stops the writer thread after everything already enqueued is written
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        StringBuilder batch = new StringBuilder(BATCH_SIZE * 80);
+        Formatter formatter = new Formatter(batch);
+
+        while (true) {
+            int count = 0;
+            LogEvent event;
+
+            while (count < BATCH_SIZE && (event = buffer.poll()) != null) {
+                formatter.format(event.format(), event.args());
+                batch.append(System.lineSeparator());
+                count++;
+            }
+
+            if (count > 0) {
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+                continue;
+            }
+
+            // nothing left: stop if closed, otherwise sleep a little
+            if (!running) {
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private static final class DefaultHolder {
+        private static final AsyncLogSink INSTANCE = new AsyncLogSink(System.out, 8192);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::close, "async-log-flush"));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Logging;
+
+// Where SharedQueue's log lines go
+//   - SyncLogSink : formats + prints in the calling thread (i.e. while holding the queue's lock)
+//   - AsyncLogSink: only enqueues, a background thread formats + prints in batches
+//   - OFF         : drops everything
+public interface LogSink {
+
+    LogSink OFF = (format, args) -> {
+    };
+
+    // "format" / "args" as in String.format(), a line separator is added
+    // Note: args must not be mutated afterwards (AsyncLogSink formats them later)
+    void log(String format, Object... args);
+}
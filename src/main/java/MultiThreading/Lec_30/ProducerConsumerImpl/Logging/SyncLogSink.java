@@ -0,0 +1,18 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Logging;
+
+import java.io.PrintStream;
+
+// the original behaviour: System.out.printf() right away
+public class SyncLogSink implements LogSink {
+
+    private final PrintStream out;
+
+    public SyncLogSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void log(String format, Object... args) {
+        out.printf(format + "%n", args);
+    }
+}
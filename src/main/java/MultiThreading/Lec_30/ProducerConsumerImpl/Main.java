@@ -8,6 +8,9 @@ public class Main {
         // shared resource
         SharedQueue queue = new SharedQueue(20);
 
+        // lock-free alternative (RingBuffer backend, capacity rounded up to 32)
+        // SharedQueue queue = new SharedQueue(20, SharedQueue.Mode.LOCK_FREE);
+
         // Creating new producer thread
         Thread producerThread1 = new Thread(new Producer(queue));
         Thread producerThread2 = new Thread(new Producer(queue));
@@ -0,0 +1,113 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram of nanosecond values with log-linear buckets (same idea as HdrHistogram)
+//
+// - values 0..31 get a bucket each, above that every power of two is split into 32 equal buckets,
+//   so a bucket is at most ~3% wide relative to its values (good enough for p50 / p99 / p99.9)
+// - bucket index = position of the highest set bit + the next 5 bits, computed without a loop
+// - record() is one atomic increment (+ 2 LongAdder adds), any number of threads may record at the same time
+// - no averages only: an average hides the one message which waited 200 ms
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // larger values (~18 min) are counted in the last bucket
+    public static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0; // nanoTime() differences of different cores can be slightly negative
+        }
+
+        counts.getAndIncrement(indexOf(Math.min(value, MAX_VALUE)));
+        count.increment();
+        sum.add(value);
+
+        // plain read first: the CAS is only needed for a new maximum (rare)
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // another thread changed the maximum, re-check
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // smallest value which lands in bucket "index"
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    // largest value which lands in bucket "index"
+    static long upperBound(int index) {
+        return lowerBound(index + 1) - 1;
+    }
+
+    // not atomic across buckets: recordings which run at the same time may be partly included
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, count.sum(), sum.sum(), max.get());
+    }
+
+    public record Snapshot(long[] counts, long count, long sum, long max) {
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // upper bound of the bucket holding the value at "percentile" (0..100), i.e. never under-reports
+        public long percentile(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile / 100 * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1)) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0f p50=%d p99=%d p99.9=%d max=%d",
+                    count, mean(), percentile(50), percentile(99), percentile(99.9), max);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+// Appends a QueueMetrics snapshot (one line) to a file every "period", on its own daemon thread
+// close() writes one last snapshot, so a short run still leaves its numbers behind
+public class MetricsDump implements AutoCloseable {
+
+    private final QueueMetrics metrics;
+    private final BufferedWriter writer;
+    private final long periodNanos;
+    private final Thread dumper;
+    private volatile boolean running = true;
+
+    public MetricsDump(QueueMetrics metrics, Path file, Duration period) {
+        this.metrics = metrics;
+        this.periodNanos = period.toNanos();
+
+        try {
+            this.writer = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.dumper = new Thread(this::dumpLoop, "metrics-dump");
+        this.dumper.setDaemon(true);
+        this.dumper.start();
+    }
+
+    private void dumpLoop() {
+        while (running) {
+            // park, not sleep + interrupt: an interrupt during a write would close the file channel
+            LockSupport.parkNanos(this, periodNanos); // close() un-parks us
+
+            dump();
+        }
+    }
+
+    private void dump() {
+        try {
+            writer.write(metrics.snapshot().toString());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            // exception handling: metrics must never stop the queue, the line is lost
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(dumper);
+
+        try {
+            dumper.join();
+            writer.close();
+        } catch (Exception e) {
+            // exception handling
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+// Everything SharedQueue records while metrics are on (all values in nanoseconds)
+//
+// - queueLatency:  enqueue -> dequeue of the sampled messages (time spent inside the queue, not in a blocked producer)
+// - producerBlock: how long a producer waited for a free slot (only publishes which had to wait)
+// - consumerIdle:  how long a consumer waited for a message (only consumes which had to wait)
+// - depth high-water mark: largest queue size seen right after a sampled publish / by a blocked producer
+public class QueueMetrics {
+
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram producerBlock = new LatencyHistogram();
+    private final LatencyHistogram consumerIdle = new LatencyHistogram();
+    private final AtomicLong depthHighWater = new AtomicLong();
+    private final IntSupplier depth;
+
+    public QueueMetrics(IntSupplier depth) {
+        this.depth = depth;
+    }
+
+    public void recordQueueLatency(long enqueuedNanos) {
+        queueLatency.record(System.nanoTime() - enqueuedNanos);
+    }
+
+    public void recordProducerBlock(long waitStartNanos) {
+        producerBlock.record(System.nanoTime() - waitStartNanos);
+    }
+
+    public void recordConsumerIdle(long waitStartNanos) {
+        consumerIdle.record(System.nanoTime() - waitStartNanos);
+    }
+
+    public void recordDepth(int currentDepth) {
+        long highWater;
+        while (currentDepth > (highWater = depthHighWater.get()) && !depthHighWater.compareAndSet(highWater, currentDepth)) {
+            // another thread raised the mark, re-check
+        }
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(System.currentTimeMillis(), queueLatency.snapshot(), producerBlock.snapshot(),
+                consumerIdle.snapshot(), depth.getAsInt(), depthHighWater.get());
+    }
+
+    public record Snapshot(long timestampMillis,
+                           LatencyHistogram.Snapshot queueLatency,
+                           LatencyHistogram.Snapshot producerBlock,
+                           LatencyHistogram.Snapshot consumerIdle,
+                           int depth,
+                           long depthHighWater) {
+
+        // one line, e.g. for MetricsDump
+        @Override
+        public String toString() {
+            return String.format("time=%d depth=%d depthHighWater=%d | queueLatency: %s | producerBlock: %s | consumerIdle: %s",
+                    timestampMillis, depth, depthHighWater, queueLatency, producerBlock, consumerIdle);
+        }
+    }
+}
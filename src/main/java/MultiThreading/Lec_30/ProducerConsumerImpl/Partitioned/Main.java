@@ -0,0 +1,85 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Partitioned;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Retry.RetryPolicy;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Main {
+
+    private static final int KEYS = 32;
+    private static final int MESSAGES_PER_KEY = 20_000;
+    private static final int POISON = 10; // always fail: retried, then dead-lettered
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        // last seen sequence number per key, to verify per key ordering
+        Map<String, Integer> lastSeq = new ConcurrentHashMap<>();
+        AtomicLong consumed = new AtomicLong();
+        AtomicLong outOfOrder = new AtomicLong();
+
+        PartitionedQueue queue = new PartitionedQueue(8, 256, (partition, message) -> {
+            // data = "<key>:<seq>"
+            String data = message.data();
+            int colon = data.indexOf(':');
+            String key = data.substring(0, colon);
+            int seq = Integer.parseInt(data.substring(colon + 1));
+            if (key.equals("poison")) {
+                throw new IllegalStateException("processing failed: " + data);
+            }
+
+            Integer previous = lastSeq.put(key, seq);
+            if (previous != null && previous != seq - 1) {
+                outOfOrder.incrementAndGet();
+            }
+            consumed.incrementAndGet();
+        });
+
+        queue.setRetryPolicy(new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(10)));
+        queue.setConsumerCount(1);
+
+        for (int i = 0; i < POISON; i++) {
+            queue.publish("poison", "poison:" + i);
+        }
+
+        // 2 producers, each one owns half of the keys (order is only defined per producer)
+        Thread producer1 = new Thread(() -> produce(queue, 0, KEYS / 2));
+        Thread producer2 = new Thread(() -> produce(queue, KEYS / 2, KEYS));
+        producer1.start();
+        producer2.start();
+
+        // re-balance while messages are flowing
+        int[] consumerCounts = {4, 2, 8, 3};
+        for (int count : consumerCounts) {
+            Thread.sleep(200);
+            queue.setConsumerCount(count);
+            System.out.println("consumers: " + count + ", consumed so far: " + consumed.get());
+        }
+
+        producer1.join();
+        producer2.join();
+
+        while (consumed.get() < (long) KEYS * MESSAGES_PER_KEY || queue.getDeadLettered() < POISON) {
+            Thread.sleep(10);
+        }
+        queue.shutdown();
+
+        System.out.println("consumed: " + consumed.get() + ", out of order: " + outOfOrder.get());
+        System.out.println("failed: " + queue.getFailed() + ", retried: " + queue.getRetried()
+                + ", dead-lettered: " + queue.getDeadLettered());
+        System.out.println("Main method ends...");
+    }
+
+    private static void produce(PartitionedQueue queue, int fromKey, int toKey) {
+        for (int seq = 0; seq < MESSAGES_PER_KEY; seq++) {
+            for (int k = fromKey; k < toKey; k++) {
+                String key = "user-" + k;
+                queue.publish(key, key + ":" + seq);
+            }
+        }
+    }
+}
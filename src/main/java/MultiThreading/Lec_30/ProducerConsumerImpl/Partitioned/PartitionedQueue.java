@@ -0,0 +1,214 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Partitioned;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Retry.RetryPolicy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// N independent SharedQueues (partitions), a message goes to the partition of its key
+//
+// - same key -> same partition -> FIFO, and every partition is consumed by exactly one worker at a time,
+//   so messages of one key are handled in publish order
+// - different partitions don't share any lock, so throughput grows with the number of partitions / workers
+// - setConsumerCount() adds / removes workers at runtime, partitions are re-assigned round-robin
+//
+// Hand-over during re-balance: a worker handles a partition only while holding that partition's
+// "ownership" lock, so the new owner starts only after the old owner finished its current message.
+//
+// Failures: a message whose handler throws is nack-ed on its partition (RetryPolicy backoff, then the
+// partition's dead-letter queue). A retry comes back at the tail of the same partition, i.e. after newer
+// messages of its key: per key order only holds for messages which don't fail.
+public class PartitionedQueue {
+
+    @FunctionalInterface
+    public interface PartitionHandler {
+        void onMessage(int partition, Message message);
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final SharedQueue[] partitions;
+    private final ReentrantLock[] ownership;
+    private final PartitionHandler handler;
+    private final LongAdder failed = new LongAdder(); // handler threw, every attempt counts
+
+    // partition -> index of the owning worker, replaced as a whole on re-balance (copy-on-write)
+    private volatile int[] owners;
+    private final List<Worker> workers = new ArrayList<>();
+
+    public PartitionedQueue(int partitionCount, int partitionSize, PartitionHandler handler) {
+        this.partitions = new SharedQueue[partitionCount];
+        this.ownership = new ReentrantLock[partitionCount];
+        this.handler = handler;
+        this.owners = new int[partitionCount];
+
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new SharedQueue(partitionSize, SharedQueue.Mode.CONDITION);
+            partitions[i].setLogging(false);
+            ownership[i] = new ReentrantLock();
+        }
+    }
+
+    public int partitionFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16); // spread high bits (same as HashMap)
+        return Math.floorMod(h, partitions.length);
+    }
+
+    // waits while the key's partition is full
+    public void publish(String key, String data) {
+        partitions[partitionFor(key)].publish(data);
+    }
+
+    // starts / stops workers and re-assigns partitions, count is capped by the number of partitions
+    public synchronized void setConsumerCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1: " + count);
+        }
+        count = Math.min(count, partitions.length);
+
+        while (workers.size() < count) {
+            Worker worker = new Worker(workers.size());
+            workers.add(worker);
+            worker.thread.start();
+        }
+
+        // assign first, then stop surplus workers: nobody picks up a partition of a stopped worker
+        int[] newOwners = new int[partitions.length];
+        for (int p = 0; p < partitions.length; p++) {
+            newOwners[p] = p % count;
+        }
+        owners = newOwners;
+
+        while (workers.size() > count) {
+            workers.remove(workers.size() - 1).stop();
+        }
+    }
+
+    public synchronized int getConsumerCount() {
+        return workers.size();
+    }
+
+    public synchronized void shutdown() {
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+        workers.clear();
+    }
+
+    // same policy for every partition
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        for (SharedQueue partition : partitions) {
+            partition.setRetryPolicy(retryPolicy);
+        }
+    }
+
+    // returns null when the partition has no dead letter (never waits)
+    public Message pollDeadLetter(int partition) {
+        return partitions[partition].pollDeadLetter();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRetried() {
+        long sum = 0;
+        for (SharedQueue partition : partitions) {
+            sum += partition.getRetried();
+        }
+        return sum;
+    }
+
+    // includes dead letters dropped because a partition's dead-letter queue was full
+    public long getDeadLettered() {
+        long sum = 0;
+        for (SharedQueue partition : partitions) {
+            sum += partition.getDeadLettered() + partition.getDeadLettersDropped();
+        }
+        return sum;
+    }
+
+    public int partitionCount() {
+        return partitions.length;
+    }
+
+    public int size(int partition) {
+        return partitions[partition].size();
+    }
+
+    private class Worker implements Runnable {
+        private final int index;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Worker(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "partition-consumer-" + index);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                boolean found = false;
+                int[] current = owners;
+
+                for (int p = 0; p < current.length; p++) {
+                    if (current[p] == index && consumeOne(p)) {
+                        found = true;
+                    }
+                }
+
+                // nothing in any owned partition
+                if (!found) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+
+        private boolean consumeOne(int partition) {
+            ReentrantLock lock = ownership[partition];
+            lock.lock();
+
+            try {
+                // re-check: partition may have been moved while we waited for the lock
+                if (owners[partition] != index) {
+                    return false;
+                }
+
+                Message message = partitions[partition].poll();
+                if (message == null) {
+                    return false;
+                }
+
+                try {
+                    handler.onMessage(partition, message);
+                    partitions[partition].ack(message);
+                } catch (Exception e) {
+                    // exception handling: retried / dead-lettered, the worker (and its partitions) keeps running
+                    failed.increment();
+                    partitions[partition].nack(message);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void stop() {
+            running = false;
+
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
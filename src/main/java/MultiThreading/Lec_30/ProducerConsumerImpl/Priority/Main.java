@@ -0,0 +1,106 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Priority;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Metrics.LatencyHistogram;
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Control messages (1 per ms) behind a flood of bulk messages, one consumer doing ~20 us of work per message
+// - FIFO:  one SharedQueue for everything, control messages wait behind the whole bulk backlog
+// - lanes: control / normal / bulk lanes with weights 8 / 4 / 1, bulk still gets its share
+public class Main {
+
+    private static final int CONTROL = 0;
+    private static final int NORMAL = 1;
+    private static final int BULK = 2;
+    private static final int[] WEIGHTS = {8, 4, 1};
+    private static final long RUN_NANOS = 2_000_000_000L;
+    private static final long WORK_NANOS = 20_000;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        SharedQueue fifo = new SharedQueue(3 * 1024, SharedQueue.Mode.LOCK_FREE);
+        fifo.setLogging(false);
+        long[] fifoCounts = run("FIFO", (lane, data) -> fifo.publish(data), fifo::poll);
+
+        PriorityLanes lanes = new PriorityLanes(1024, WEIGHTS, Duration.ofMillis(5));
+        long[] laneCounts = run("lanes", lanes::publish, lanes::poll);
+
+        System.out.printf("FIFO  consumed control / normal / bulk: %,d / %,d / %,d%n", fifoCounts[0], fifoCounts[1], fifoCounts[2]);
+        System.out.printf("lanes consumed control / normal / bulk: %,d / %,d / %,d (served by aging: %d)%n",
+                laneCounts[0], laneCounts[1], laneCounts[2], lanes.getAged());
+
+        System.out.println("Main method ends...");
+    }
+
+    @FunctionalInterface
+    private interface Publisher {
+        void publish(int lane, String data);
+    }
+
+    private static long[] run(String name, Publisher publisher, Supplier<Message> poller) throws InterruptedException {
+        long end = System.nanoTime() + RUN_NANOS;
+        LatencyHistogram controlLatency = new LatencyHistogram();
+        long[] consumed = new long[3];
+
+        // "<lane>:<publish nanoTime>"
+        Consumer<Integer> flood = lane -> {
+            while (System.nanoTime() < end) {
+                publisher.publish(lane, lane + ":" + System.nanoTime());
+            }
+        };
+        Thread bulk = new Thread(() -> flood.accept(BULK));
+        Thread normal = new Thread(() -> flood.accept(NORMAL));
+        Thread control = new Thread(() -> {
+            while (System.nanoTime() < end) {
+                publisher.publish(CONTROL, CONTROL + ":" + System.nanoTime());
+                LockSupport.parkNanos(1_000_000);
+            }
+        });
+
+        Thread consumer = new Thread(() -> {
+            while (System.nanoTime() < end) {
+                Message message = poller.get();
+                if (message == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                String data = message.data();
+                int lane = data.charAt(0) - '0';
+                consumed[lane]++;
+                if (lane == CONTROL) {
+                    controlLatency.record(System.nanoTime() - Long.parseLong(data, 2, data.length(), 10));
+                }
+
+                // simulated work
+                long workEnd = System.nanoTime() + WORK_NANOS;
+                while (System.nanoTime() < workEnd) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+
+        bulk.start();
+        normal.start();
+        control.start();
+        consumer.start();
+        consumer.join();
+
+        // unblock publishers still waiting for room
+        while (bulk.isAlive() || normal.isAlive() || control.isAlive()) {
+            poller.get();
+        }
+
+        LatencyHistogram.Snapshot snapshot = controlLatency.snapshot();
+        System.out.printf("%-5s control message latency (us): p50 %,.0f, p99 %,.0f, max %,.0f%n", name,
+                snapshot.percentile(50) / 1e3, snapshot.percentile(99) / 1e3, snapshot.max() / 1e3);
+        return consumed;
+    }
+}
@@ -0,0 +1,228 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Priority;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageIdGenerator;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.RingBuffer;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.WaitStrategy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Producer / consumer queue with priority lanes: lane 0 = highest priority, every lane is its own RingBuffer,
+// so bulk traffic filling one lane never blocks the publishers / messages of another lane
+//
+// Consumers pick the lane with deficit round robin (DRR): a lane gets "weight" messages in a row, then the next
+// non-empty lane gets its turn. With weights {8, 4, 1} lane 0 gets 8 of every 13 messages while all are busy,
+// but a busy lane 0 can't starve lane 2, and an idle lane's share goes to the others.
+//
+// O(1) selection: a bit mask has bit i set while lane i may have messages, the next non-empty lane after the
+// current one is a numberOfTrailingZeros() on the (rotated) mask instead of a scan over the lanes
+//   - producer: offer, then set the bit (only if it isn't set yet, so a busy lane doesn't write the shared mask)
+//   - consumer: lane turned out empty -> clear the bit, then re-check the lane (a producer may have offered in
+//     between and seen the bit still set), set it again if so
+//
+// Aging: the round order is per consumer (DRR state lives in a ThreadLocal cursor, no shared scheduler lock),
+// so with many lanes / large weights a lane could still wait long. Every AGING_CHECK_EVERY polls a consumer
+// looks for a non-empty lane which wasn't served for "maxWait" and serves it first (amortized O(1) per poll).
+public class PriorityLanes {
+
+    public static final int MAX_LANES = Long.SIZE;
+    private static final int AGING_CHECK_EVERY = 64;
+
+    private static final VarHandle NON_EMPTY;
+
+    static {
+        try {
+            NON_EMPTY = MethodHandles.lookup().findVarHandle(PriorityLanes.class, "nonEmpty", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final RingBuffer<Message>[] lanes;
+    private final int[] weights;
+    private final long maxWaitNanos;
+
+    private volatile long nonEmpty; // bit i: lane i may have messages
+    private final AtomicLongArray lastServed; // per lane: nanoTime of the last poll, or when it became non-empty
+
+    private final WaitStrategy producerWait;
+    private final WaitStrategy consumerWait;
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+
+    private final LongAdder[] served;
+    private final LongAdder aged = new LongAdder();
+
+    public PriorityLanes(int laneSize, int[] weights, Duration maxWait) {
+        this(laneSize, weights, maxWait, SharedQueue.DEFAULT_WAIT_STRATEGY);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // generic array of lanes
+    public PriorityLanes(int laneSize, int[] weights, Duration maxWait, Supplier<WaitStrategy> waitStrategy) {
+        if (weights.length == 0 || weights.length > MAX_LANES) {
+            throw new IllegalArgumentException("1 to " + MAX_LANES + " lanes: " + weights.length);
+        }
+
+        this.lanes = new RingBuffer[weights.length];
+        this.weights = weights.clone();
+        this.maxWaitNanos = maxWait.toNanos();
+        this.lastServed = new AtomicLongArray(weights.length);
+        this.served = new LongAdder[weights.length];
+        this.producerWait = waitStrategy.get();
+        this.consumerWait = waitStrategy.get();
+
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 1) {
+                throw new IllegalArgumentException("weight of lane " + i + " must be positive: " + weights[i]);
+            }
+            lanes[i] = new RingBuffer<>(laneSize);
+            served[i] = new LongAdder();
+        }
+    }
+
+    // returns false when the lane is full (never waits)
+    public boolean offer(int lane, String data) {
+        return offer(lane, new Message(data, MessageIdGenerator.DEFAULT.nextId()));
+    }
+
+    private boolean offer(int lane, Message message) {
+        if (!lanes[lane].offer(message)) {
+            return false;
+        }
+
+        long bit = 1L << lane;
+        if ((nonEmpty & bit) == 0) {
+            lastServed.set(lane, System.nanoTime()); // waiting starts now, not at its last service
+            NON_EMPTY.getAndBitwiseOr(this, bit);
+        }
+        consumerWait.signalAll();
+        return true;
+    }
+
+    // waits while the lane is full
+    public void publish(int lane, String data) {
+        Message message = new Message(data, MessageIdGenerator.DEFAULT.nextId());
+        RingBuffer<Message> ring = lanes[lane];
+
+        while (!offer(lane, message)) {
+            try {
+                producerWait.waitFor(() -> ring.size() < ring.capacity());
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+    }
+
+    // returns null when every lane is empty (never waits)
+    public Message poll() {
+        Cursor cursor = cursors.get();
+
+        if (++cursor.polls % AGING_CHECK_EVERY == 0) {
+            Message message = pollStarved();
+            if (message != null) {
+                return message;
+            }
+        }
+
+        // every round either returns, clears the bit of an empty lane or moves to the next non-empty lane,
+        // the bound only matters if producers keep re-filling lanes the moment they are cleared
+        for (int round = 0; round <= 2 * lanes.length; round++) {
+            long mask = nonEmpty;
+            if (mask == 0) {
+                return null;
+            }
+
+            int lane = cursor.lane;
+            if (cursor.credit > 0 && (mask & (1L << lane)) != 0) {
+                Message message = lanes[lane].poll();
+                if (message != null) {
+                    cursor.credit--;
+                    served(lane);
+                    return message;
+                }
+                markEmpty(lane);
+            }
+
+            // next lane after the current one with its bit set, wrapping around
+            long after = mask & (-2L << lane);
+            cursor.lane = Long.numberOfTrailingZeros(after != 0 ? after : mask);
+            cursor.credit = weights[cursor.lane];
+        }
+        return null;
+    }
+
+    public Message consume() {
+        Message message;
+        while ((message = poll()) == null) {
+            try {
+                consumerWait.waitFor(() -> nonEmpty != 0);
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+        return message;
+    }
+
+    // a non-empty lane not served for maxWait, scanned through the set bits only
+    private Message pollStarved() {
+        long now = System.nanoTime();
+
+        for (long mask = nonEmpty; mask != 0; mask &= mask - 1) {
+            int lane = Long.numberOfTrailingZeros(mask);
+
+            if (now - lastServed.get(lane) > maxWaitNanos) {
+                Message message = lanes[lane].poll();
+                if (message != null) {
+                    aged.increment();
+                    served(lane);
+                    return message;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void served(int lane) {
+        served[lane].increment();
+        lastServed.lazySet(lane, System.nanoTime());
+        producerWait.signalAll();
+    }
+
+    private void markEmpty(int lane) {
+        long bit = 1L << lane;
+        NON_EMPTY.getAndBitwiseAnd(this, ~bit);
+
+        if (lanes[lane].size() > 0) {
+            NON_EMPTY.getAndBitwiseOr(this, bit);
+        }
+    }
+
+    public int lanes() {
+        return lanes.length;
+    }
+
+    public int size(int lane) {
+        return lanes[lane].size();
+    }
+
+    public long getServed(int lane) {
+        return served[lane].sum();
+    }
+
+    // messages served because their lane waited longer than maxWait
+    public long getAged() {
+        return aged.sum();
+    }
+
+    // DRR state of one consumer thread
+    private static final class Cursor {
+        int lane;
+        int credit;
+        long polls;
+    }
+}
@@ -3,9 +3,15 @@ package MultiThreading.Lec_30.ProducerConsumerImpl;
 public class Producer implements Runnable {
 
     SharedQueue sharedQueue;
+    long pauseMillis; // pause between 2 messages, 0 = publish as fast as possible
 
     public Producer(SharedQueue sharedQueue) {
+        this(sharedQueue, 3000);
+    }
+
+    public Producer(SharedQueue sharedQueue, long pauseMillis) {
         this.sharedQueue = sharedQueue;
+        this.pauseMillis = pauseMillis;
     }
 
 
@@ -16,8 +22,12 @@ public class Producer implements Runnable {
         for (int i = 0; i < 5; i++) {
             sharedQueue.publish("Message-" + (int) (Math.random() * 1000));
 
+            if (pauseMillis == 0) {
+                continue;
+            }
+
             try {
-                Thread.sleep(3000);
+                Thread.sleep(pauseMillis);
             } catch (Exception e) {
                 // exception handling
             }
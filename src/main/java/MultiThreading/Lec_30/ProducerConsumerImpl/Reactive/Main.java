@@ -0,0 +1,112 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Reactive;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// upstream (SubmissionPublisher) -> QueueSubscriber -> SharedQueue -> QueuePublisher -> 2000 slow subscribers
+// all delivery runs on one pool of 4 threads
+public class Main {
+
+    private static final int MESSAGES = 200_000;
+    private static final int SUBSCRIBERS = 2000;
+    private static final int PROCESSING_MILLIS = 5; // per message, every subscriber asks for the next one only after it
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        SharedQueue queue = new SharedQueue(1024, SharedQueue.Mode.LOCK_FREE);
+        queue.setLogging(false);
+
+        AtomicLong delivered = new AtomicLong();
+        SlowSubscriber[] subscribers = new SlowSubscriber[SUBSCRIBERS];
+
+        QueuePublisher publisher = new QueuePublisher(queue, executor);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            subscribers[i] = new SlowSubscriber(executor, delivered);
+            publisher.subscribe(subscribers[i]);
+        }
+
+        long start = System.nanoTime();
+
+        try (SubmissionPublisher<String> upstream = new SubmissionPublisher<>(executor, 256)) {
+            upstream.subscribe(new QueueSubscriber(queue, 256));
+
+            for (int i = 0; i < MESSAGES; i++) {
+                upstream.submit("Message-" + i); // blocks only this (main) thread when upstream's own buffer is full
+            }
+        }
+
+        while (delivered.get() < MESSAGES) {
+            Thread.sleep(10);
+        }
+        long nanos = System.nanoTime() - start;
+
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (SlowSubscriber subscriber : subscribers) {
+            min = Math.min(min, subscriber.received);
+            max = Math.max(max, subscriber.received);
+        }
+
+        System.out.printf("%,d messages to %,d subscribers in %d ms (%,.0f msgs/sec), per subscriber min: %d max: %d%n",
+                MESSAGES, SUBSCRIBERS, nanos / 1_000_000, MESSAGES / (nanos / 1e9), min, max);
+        System.out.println("live threads: " + Thread.activeCount());
+
+        subscribers[0].subscription.cancel();
+        executor.shutdown();
+
+        System.out.println("Main method ends...");
+    }
+
+    // asks for 1 message, "processes" it asynchronously (a timer, no sleeping thread), then asks for the next
+    private static final class SlowSubscriber implements Flow.Subscriber<Message> {
+
+        private final Executor processingDone;
+        private final AtomicLong delivered;
+        private Flow.Subscription subscription;
+        private volatile long received;
+
+        SlowSubscriber(ExecutorService executor, AtomicLong delivered) {
+            this.processingDone = CompletableFuture.delayedExecutor(PROCESSING_MILLIS, TimeUnit.MILLISECONDS, executor);
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Message message) {
+            received++; // onNext() is never called concurrently for one subscriber
+            delivered.incrementAndGet();
+            processingDone.execute(() -> subscription.request(1));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            System.out.println("subscriber failed: " + throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Reactive;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// SharedQueue as a Flow.Publisher: subscribers compete for the messages (every message goes to exactly one
+// subscriber, same as consumer threads calling consume())
+//
+// - no thread per subscriber: delivery runs as short tasks on the shared "executor", only poll() is used
+// - a subscriber gets messages only while it has demand (request(n)), never more than it asked for
+// - subscriber with demand but an empty queue: registered as "waiting"; the queue's publish listener
+//   wakes up one waiting subscriber per publish (a woken-up subscriber which leaves messages behind wakes the next one)
+// - one drain task delivers at most BATCH messages, then goes back to the executor, so a subscriber with a
+//   huge demand can't keep an executor thread to itself
+// - every signal (onSubscribe, onNext, onError) comes from the drain, which never runs twice at the same time
+//   for one subscription (spec rule 1.3), e.g. a request() inside onSubscribe() is served once it returned
+//
+// Note: replaces the queue's publish listener, so only one QueuePublisher per SharedQueue
+public class QueuePublisher implements Flow.Publisher<Message> {
+
+    private static final int BATCH = 64;
+
+    private final SharedQueue queue;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<QueueSubscription> waiting = new ConcurrentLinkedQueue<>();
+
+    public QueuePublisher(SharedQueue queue, Executor executor) {
+        this.queue = queue;
+        this.executor = executor;
+        queue.setPublishListener(this::wakeOne);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber"); // spec rule 1.9
+        new QueueSubscription(subscriber).schedule(); // the drain calls onSubscribe()
+    }
+
+    // publishing thread: one new message (or batch) -> one subscriber is enough to start with
+    private void wakeOne() {
+        QueueSubscription subscription;
+        while ((subscription = waiting.poll()) != null) {
+            subscription.parked.set(false);
+
+            if (!subscription.cancelled) {
+                subscription.schedule();
+                return;
+            }
+            // cancelled while waiting, try the next one
+        }
+    }
+
+    private final class QueueSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Message> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+
+        // > 0: a drain task is scheduled / running, every schedule() while it runs makes it loop once more
+        // (so onNext() is never called by 2 threads at the same time)
+        private final AtomicInteger wip = new AtomicInteger();
+
+        // in "waiting" (at most once)
+        private final AtomicBoolean parked = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        // set by request(n <= 0), signalled by the drain (spec rule 3.9)
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        // drain only (wip orders the runs, so plain fields are enough)
+        private boolean subscribed; // onSubscribe() was called
+        private boolean terminated; // onError() was called
+
+        QueueSubscription(Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error.compareAndSet(null, new IllegalArgumentException("request must be positive: " + n));
+                schedule();
+                return;
+            }
+
+            // adds up, capped at Long.MAX_VALUE (= unbounded)
+            long current;
+            long updated;
+            do {
+                current = demand.get();
+                updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!demand.compareAndSet(current, updated));
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (parked.get()) {
+                waiting.remove(this); // not left for wakeOne() to skip
+            }
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+
+            while (true) {
+                if (!subscribed) {
+                    subscribed = true;
+                    try {
+                        subscriber.onSubscribe(this);
+                    } catch (Throwable t) {
+                        cancel(); // spec rule 2.13: onSubscribe must not throw, the subscription is over
+                    }
+                }
+
+                Throwable failure = error.get();
+                if (failure != null && !terminated) {
+                    terminated = true;
+                    cancel();
+                    subscriber.onError(failure);
+                }
+
+                // cancelled: "wip" stays > 0, so no drain runs again (no more signals)
+                if (cancelled) {
+                    return;
+                }
+
+                long requested = demand.get();
+                int emitted = 0;
+
+                while (emitted < requested && emitted < BATCH && !cancelled && error.get() == null) {
+                    Message message = queue.poll();
+                    if (message == null) {
+                        break;
+                    }
+
+                    try {
+                        subscriber.onNext(message);
+                    } catch (Throwable t) {
+                        // spec rule 2.13: onNext must not throw, the subscription is over
+                        terminated = true;
+                        cancel();
+                        subscriber.onError(t);
+                        return;
+                    }
+                    emitted++;
+                }
+
+                if (cancelled) {
+                    return;
+                }
+
+                if (emitted > 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+
+                // batch used up: give the executor thread to others, "wip" stays > 0 till the next run
+                if (emitted == BATCH) {
+                    executor.execute(this::drain);
+                    return;
+                }
+
+                if (demand.get() > 0) {
+                    park(); // demand left, but the queue is empty
+                } else if (queue.size() > 0) {
+                    wakeOne(); // no demand left, but messages are: somebody else may want them
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void park() {
+            if (!parked.compareAndSet(false, true)) {
+                return; // already waiting
+            }
+
+            waiting.offer(this);
+            if (cancelled) {
+                waiting.remove(this); // cancel() ran before the offer() and found nothing to remove
+                return;
+            }
+
+            // a publish between our last poll() and offer() above found nobody waiting:
+            // re-check after registering (both sides are volatile writes + reads, so one of us sees the other)
+            if (queue.size() > 0) {
+                wakeOne();
+            }
+        }
+    }
+}
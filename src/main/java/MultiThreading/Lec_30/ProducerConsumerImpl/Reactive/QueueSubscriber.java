@@ -0,0 +1,114 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Reactive;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+// SharedQueue as a Flow.Subscriber: a reactive upstream publishes into the queue without ever blocking a thread
+//
+// - asks upstream for "prefetch" items, and for prefetch / 2 more every time prefetch / 2 of them are in the queue
+// - uses offer(), never publish(): if the queue is full the item is kept (in order) and retried a bit later on a
+//   timer, and no new demand is signalled till everything kept is in the queue (back-pressure to upstream)
+public class QueueSubscriber implements Flow.Subscriber<String> {
+
+    private static final long RETRY_MILLIS = 1;
+
+    private final SharedQueue queue;
+    private final int prefetch;
+    private final int replenish;
+
+    // items the queue had no room for, at most "prefetch" (upstream can't send more than we requested)
+    private final ArrayDeque<String> overflow = new ArrayDeque<>();
+    private Flow.Subscription subscription;
+    private int sinceLastRequest;
+
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    public QueueSubscriber(SharedQueue queue, int prefetch) {
+        if (prefetch < 2) {
+            throw new IllegalArgumentException("prefetch must be at least 2: " + prefetch);
+        }
+        this.queue = queue;
+        this.prefetch = prefetch;
+        this.replenish = prefetch / 2;
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel(); // spec rule 2.5: only one subscription
+            return;
+        }
+
+        this.subscription = subscription;
+        subscription.request(prefetch);
+    }
+
+    // synchronized: upstream calls it serially, but retry() runs on the timer thread
+    @Override
+    public synchronized void onNext(String item) {
+        Objects.requireNonNull(item);
+
+        // something is kept already: keep this one too (order)
+        if (!overflow.isEmpty() || !queue.offer(item)) {
+            overflow.add(item);
+            if (overflow.size() == 1) {
+                retryLater();
+            }
+            return;
+        }
+
+        delivered();
+    }
+
+    private synchronized void retry() {
+        while (!overflow.isEmpty() && queue.offer(overflow.peek())) {
+            overflow.poll();
+            delivered();
+        }
+
+        if (!overflow.isEmpty()) {
+            retryLater();
+        }
+    }
+
+    private void retryLater() {
+        CompletableFuture.delayedExecutor(RETRY_MILLIS, TimeUnit.MILLISECONDS).execute(this::retry);
+    }
+
+    private void delivered() {
+        if (++sinceLastRequest == replenish) {
+            sinceLastRequest = 0;
+            subscription.request(replenish);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+    }
+
+    // upstream finished (completed or failed), items in "overflow" may still be on their way into the queue
+    public boolean isDone() {
+        return done;
+    }
+
+    public synchronized int getOverflow() {
+        return overflow.size();
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+}
@@ -0,0 +1,26 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Remote;
+
+// Wire format shared by QueueServer and QueueClient (big endian, ByteBuffer default)
+//
+//   frame: | int length (bytes after this int) | byte type | int count | payload |
+//
+//   PUBLISH   client -> server  count messages, each | int length | UTF-8 bytes |
+//   PUBLISHED server -> client  no payload, count = messages now in the queue
+//   FETCH     client -> server  no payload, count = max. messages wanted (server answers once at least 1 is there)
+//   DELIVER   server -> client  count messages, each | long ID | int length | UTF-8 bytes |
+//
+// Many messages per frame: one length prefix, one syscall and one wake-up of the other side per batch, not per message
+final class Frames {
+
+    static final byte PUBLISH = 1;
+    static final byte PUBLISHED = 2;
+    static final byte FETCH = 3;
+    static final byte DELIVER = 4;
+
+    static final int HEADER = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+    static final int MAX_FRAME = 64 * 1024; // length of one frame incl. header
+    static final int MAX_MESSAGE_BYTES = 16 * 1024; // UTF-8 bytes of one message
+
+    private Frames() {
+    }
+}
@@ -0,0 +1,164 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Remote;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Metrics.LatencyHistogram;
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 2 JVMs: this one starts a second one ("server" mode) which hosts the SharedQueue behind a QueueServer
+//
+// For every concurrency level: that many producer and that many consumer connections (1 thread each),
+// producers publish frames of BATCH messages, consumers fetch up to FETCH messages per frame
+// - frames/sec: PUBLISH + DELIVER frames
+// - publish round trip: PUBLISH sent -> PUBLISHED received (per frame)
+// - end to end: message published -> consumed (every message carries its System.nanoTime(),
+//   producers and consumers are both in this JVM)
+public class Main {
+
+    private static final int[] CONNECTIONS = {1, 4, 16, 64};
+    private static final int MESSAGES = 640_000; // per level
+    private static final int BATCH = 32;
+    private static final int FETCH = 256;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && args[0].equals("server")) {
+            serve();
+            return;
+        }
+
+        System.out.println("Main method starts...");
+
+        Process server = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(), "server")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        // the server process prints its port, then runs till its stdin is closed
+        BufferedReader serverOutput = new BufferedReader(new InputStreamReader(server.getInputStream()));
+        int port = Integer.parseInt(serverOutput.readLine());
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        System.out.println("server process on port " + port);
+
+        run(address, 1, MESSAGES / 4, false); // warm up
+        System.out.println("connections  frames/sec    msgs/sec  publish p50 / p99 (us)  end to end p50 / p99 (us)");
+        for (int connections : CONNECTIONS) {
+            run(address, connections, MESSAGES, true);
+        }
+
+        server.getOutputStream().close();
+        server.waitFor();
+
+        System.out.println("Main method ends...");
+    }
+
+    private static void serve() throws IOException {
+        SharedQueue queue = new SharedQueue(64 * 1024, SharedQueue.Mode.LOCK_FREE);
+        queue.setLogging(false);
+
+        try (QueueServer server = new QueueServer(queue, 0)) {
+            System.out.println(server.getPort());
+            System.out.flush();
+
+            while (System.in.read() >= 0) {
+                // runs till the parent closes stdin
+            }
+        }
+    }
+
+    private static void run(InetSocketAddress address, int connections, int messages, boolean print) throws Exception {
+        LatencyHistogram publishRoundTrip = new LatencyHistogram();
+        LatencyHistogram endToEnd = new LatencyHistogram();
+        AtomicLong frames = new AtomicLong();
+        AtomicLong consumed = new AtomicLong();
+
+        List<QueueClient> consumerClients = new ArrayList<>();
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            QueueClient client = new QueueClient(address);
+            consumerClients.add(client);
+
+            consumers.add(new Thread(() -> {
+                List<Message> batch = new ArrayList<>(FETCH);
+                try {
+                    while (consumed.get() < messages) {
+                        batch.clear();
+                        client.drainTo(batch, FETCH);
+                        frames.incrementAndGet();
+
+                        long now = System.nanoTime();
+                        for (Message message : batch) {
+                            endToEnd.record(now - Long.parseLong(message.data()));
+                        }
+                        consumed.addAndGet(batch.size());
+                    }
+                } catch (IOException e) {
+                    // exception handling (closed by main once everything is consumed)
+                }
+            }));
+        }
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < connections; p++) {
+            int share = messages / connections + (p < messages % connections ? 1 : 0);
+
+            producers.add(new Thread(() -> {
+                List<String> batch = new ArrayList<>(BATCH);
+                try (QueueClient client = new QueueClient(address)) {
+                    for (int sent = 0; sent < share; sent += batch.size()) {
+                        batch.clear();
+                        long start = System.nanoTime();
+                        for (int i = 0; i < Math.min(BATCH, share - sent); i++) {
+                            batch.add(Long.toString(start));
+                        }
+
+                        client.publishAll(batch);
+                        publishRoundTrip.record(System.nanoTime() - start);
+                        frames.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    // exception handling
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        consumers.forEach(Thread::start);
+        producers.forEach(Thread::start);
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        while (consumed.get() < messages) {
+            Thread.sleep(1);
+        }
+        long nanos = System.nanoTime() - start;
+
+        // consumers still waiting in a fetch: closing the connection ends it
+        for (QueueClient client : consumerClients) {
+            client.close();
+        }
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+
+        if (print) {
+            LatencyHistogram.Snapshot publish = publishRoundTrip.snapshot();
+            LatencyHistogram.Snapshot delivery = endToEnd.snapshot();
+            System.out.printf("%11d  %10.0f  %10.0f  %10.1f / %8.1f     %10.1f / %8.1f%n",
+                    connections, frames.get() / (nanos / 1e9), messages / (nanos / 1e9),
+                    publish.percentile(50) / 1e3, publish.percentile(99) / 1e3,
+                    delivery.percentile(50) / 1e3, delivery.percentile(99) / 1e3);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Remote;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+
+// Remote SharedQueue for Producer / Consumer style threads: same publish / consume methods, one connection per client
+//
+// - blocking SocketChannel (one request at a time per client, the server side is the non-blocking one)
+// - a frame is sent as 2 direct buffers, header + messages, with one gathering write: the header (which needs
+//   the length of the messages) is filled in last without moving the messages
+// - publishAll() sends many messages in one frame, consume() fetches up to "prefetch" messages at once
+//   (prefetched messages are already taken from the server queue)
+//
+// not thread safe: one client per thread
+public class QueueClient implements AutoCloseable {
+
+    public static final int DEFAULT_PREFETCH = 64;
+
+    private final SocketChannel channel;
+    private final int prefetch;
+
+    private final ByteBuffer header = ByteBuffer.allocateDirect(Frames.HEADER);
+    private final ByteBuffer body = ByteBuffer.allocateDirect(Frames.MAX_FRAME - Frames.HEADER);
+    private final ByteBuffer[] frame = {header, body};
+    private final ByteBuffer in = ByteBuffer.allocateDirect(Frames.MAX_FRAME);
+    private final byte[] scratch = new byte[Frames.MAX_MESSAGE_BYTES];
+
+    private final ArrayDeque<Message> prefetched = new ArrayDeque<>();
+
+    public QueueClient(InetSocketAddress address) throws IOException {
+        this(address, DEFAULT_PREFETCH);
+    }
+
+    public QueueClient(InetSocketAddress address, int prefetch) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.prefetch = prefetch;
+        this.in.flip(); // read mode, empty
+    }
+
+    public void publish(String data) throws IOException {
+        publishAll(List.of(data));
+    }
+
+    // as few frames as possible, returns once the server has put every message in its queue
+    public void publishAll(Collection<String> data) throws IOException {
+        body.clear();
+        int count = 0;
+
+        for (String item : data) {
+            byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Frames.MAX_MESSAGE_BYTES) {
+                throw new IllegalArgumentException("message of " + bytes.length + " bytes, max. " + Frames.MAX_MESSAGE_BYTES);
+            }
+
+            if (body.remaining() < Integer.BYTES + bytes.length) {
+                send(Frames.PUBLISH, count);
+                await(Frames.PUBLISHED);
+                body.clear();
+                count = 0;
+            }
+            body.putInt(bytes.length).put(bytes);
+            count++;
+        }
+
+        if (count > 0) {
+            send(Frames.PUBLISH, count);
+            await(Frames.PUBLISHED);
+        }
+    }
+
+    public Message consume() throws IOException {
+        if (prefetched.isEmpty()) {
+            drainTo(prefetched, prefetch);
+        }
+        return prefetched.poll();
+    }
+
+    // waits till the server has at least 1 message, returns how many (max. "max") were added to "target"
+    public int drainTo(Collection<Message> target, int max) throws IOException {
+        body.clear();
+        send(Frames.FETCH, max);
+        int count = await(Frames.DELIVER);
+
+        for (int i = 0; i < count; i++) {
+            long ID = in.getLong();
+            int size = in.getInt();
+            in.get(scratch, 0, size);
+            target.add(new Message(new String(scratch, 0, size, StandardCharsets.UTF_8), ID));
+        }
+        return count;
+    }
+
+    // gathering write of header + body
+    private void send(byte type, int count) throws IOException {
+        body.flip();
+        header.clear();
+        header.putInt(Frames.HEADER - Integer.BYTES + body.remaining()).put(type).putInt(count);
+        header.flip();
+
+        while (body.hasRemaining() || header.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    // reads the next frame (must be of the given type), leaves "in" at its payload and returns its count
+    private int await(byte type) throws IOException {
+        in.compact();
+        while (in.position() < Integer.BYTES || in.position() < Integer.BYTES + in.getInt(0)) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("connection closed by server");
+            }
+        }
+        in.flip();
+
+        in.getInt();
+        byte received = in.get();
+        int count = in.getInt();
+        if (received != type) {
+            throw new IOException("expected frame type " + type + ", got " + received);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
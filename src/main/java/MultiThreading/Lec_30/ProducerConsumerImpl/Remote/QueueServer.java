@@ -0,0 +1,374 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Remote;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Makes a SharedQueue reachable over TCP: one selector thread serves every client connection (see Frames)
+//
+// - the selector thread never blocks: it only uses offer() / poll() on the queue
+//     - queue full while publishing: the rest of the frame is kept, reading from that connection stops
+//       (TCP back-pressure to the client) and offering is retried every loop
+//     - queue empty on FETCH: the fetch stays pending and is answered once messages arrive
+// - direct ByteBuffers per connection (no copy between Java heap and socket)
+// - responses go into 2 buffers, "control" (PUBLISHED) and "data" (DELIVER), and are flushed together
+//   with one gathering write; a client which doesn't read its responses fills "control", frames are only
+//   handled while it has room for one more PUBLISHED (reading stops till the client catches up)
+// - a misbehaving client (bad frame, any exception while serving it) only closes its own connection
+// - messages published locally can be larger than a client could, a message over MAX_MESSAGE_BYTES is
+//   moved to the queue's dead-letter queue instead of being delivered
+public class QueueServer implements AutoCloseable {
+
+    private final SharedQueue queue;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread loop;
+    private volatile boolean running = true;
+
+    // connections with a stalled publish or a pending fetch, retried every loop
+    private final List<Connection> busy = new ArrayList<>();
+
+    // port 0 = any free port, see getPort()
+    public QueueServer(SharedQueue queue, int port) throws IOException {
+        this.queue = queue;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.loop = new Thread(this::selectLoop, "queue-server");
+        this.loop.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                // something to retry: don't sleep longer than 1 ms (e.g. messages published locally for a pending fetch)
+                if (busy.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.select(1);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                read(connection);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                flush(connection);
+                                if (canResume(connection) && handleFrames(connection)) {
+                                    retryBusy();
+                                }
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        close(key);
+                    }
+                }
+
+                retryBusy();
+            } catch (IOException e) {
+                // exception handling
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // frames are batched already
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            close(connection.key);
+            return;
+        }
+
+        if (handleFrames(connection)) {
+            retryBusy(); // new messages: answer pending fetches right away, not on the next timeout
+        }
+    }
+
+    // handles every complete frame in "in", stops early when a publish stalls (the rest stays in "in")
+    // returns true when messages were published
+    private boolean handleFrames(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        in.flip();
+
+        boolean published = false;
+        connection.blocked = false;
+        while (connection.stalled.isEmpty() && in.remaining() >= Integer.BYTES) {
+            if (connection.control.remaining() < Frames.HEADER) {
+                connection.blocked = true; // no room for the PUBLISHED of this frame, retried like a stalled publish
+                markBusy(connection);
+                break;
+            }
+
+            int length = in.getInt(in.position());
+            if (length < Frames.HEADER - Integer.BYTES || length + Integer.BYTES > Frames.MAX_FRAME) {
+                throw new IOException("invalid frame length: " + length);
+            }
+            if (in.remaining() < Integer.BYTES + length) {
+                break; // rest of the frame is still on its way
+            }
+
+            in.getInt();
+            int end = in.position() + length;
+            byte type = in.get();
+            int count = in.getInt();
+
+            // everything from the client is checked, a bad frame closes this connection (IOException) instead
+            // of killing the selector thread with an IndexOutOfBounds / BufferUnderflow
+            if (type == Frames.PUBLISH) {
+                if (count < 0) {
+                    throw new IOException("invalid message count: " + count);
+                }
+                for (int i = 0; i < count; i++) {
+                    if (in.position() + Integer.BYTES > end) {
+                        throw new IOException("frame shorter than its " + count + " messages");
+                    }
+                    int size = in.getInt();
+                    if (size < 0 || size > Frames.MAX_MESSAGE_BYTES || in.position() + size > end) {
+                        throw new IOException("invalid message size: " + size);
+                    }
+                    in.get(connection.scratch, 0, size);
+                    connection.stalled.add(new String(connection.scratch, 0, size, StandardCharsets.UTF_8));
+                }
+                connection.unacked += count;
+                offerStalled(connection);
+                published = true;
+            } else if (type == Frames.FETCH) {
+                if (count <= 0) {
+                    throw new IOException("invalid fetch count: " + count); // would never be answered
+                }
+                connection.pendingFetch = count;
+                serveFetch(connection);
+            } else {
+                throw new IOException("unknown frame type: " + type);
+            }
+
+            in.position(end);
+        }
+
+        in.compact();
+
+        // can't take more messages from this client till the stalled ones are in the queue
+        updateInterest(connection);
+        flush(connection);
+        return published;
+    }
+
+    // frames left in "in" because "control" was full: handled once a flush made room
+    private boolean canResume(Connection connection) {
+        return connection.blocked && connection.key.isValid() && connection.control.remaining() >= Frames.HEADER;
+    }
+
+    private void offerStalled(Connection connection) {
+        while (!connection.stalled.isEmpty() && queue.offer(connection.stalled.peek())) {
+            connection.stalled.poll();
+        }
+
+        if (connection.stalled.isEmpty() && connection.unacked > 0) {
+            ByteBuffer control = connection.control;
+            control.putInt(Frames.HEADER - Integer.BYTES).put(Frames.PUBLISHED).putInt(connection.unacked);
+            connection.unacked = 0;
+        } else if (!connection.stalled.isEmpty()) {
+            markBusy(connection);
+        }
+    }
+
+    // polls up to "pendingFetch" messages into one DELIVER frame
+    private void serveFetch(Connection connection) {
+        ByteBuffer data = connection.data;
+        int start = data.position();
+        int count = 0;
+
+        // room for one more message of the largest size, in the frame and in the buffer
+        data.position(start + Frames.HEADER);
+        while (count < connection.pendingFetch
+                && data.position() - start + Long.BYTES + Integer.BYTES + Frames.MAX_MESSAGE_BYTES <= Frames.MAX_FRAME
+                && data.remaining() >= Long.BYTES + Integer.BYTES + Frames.MAX_MESSAGE_BYTES) {
+
+            Message message = queue.poll();
+            if (message == null) {
+                break;
+            }
+
+            byte[] bytes = message.data().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Frames.MAX_MESSAGE_BYTES) {
+                queue.deadLetter(message); // the room check above only holds for messages up to this size
+                continue;
+            }
+            data.putLong(message.ID()).putInt(bytes.length).put(bytes);
+            count++;
+        }
+
+        if (count == 0) {
+            data.position(start);
+            markBusy(connection);
+            return;
+        }
+
+        data.putInt(start, data.position() - start - Integer.BYTES);
+        data.put(start + Integer.BYTES, Frames.DELIVER);
+        data.putInt(start + Integer.BYTES + Byte.BYTES, count);
+        connection.pendingFetch = 0;
+    }
+
+    private void markBusy(Connection connection) {
+        if (!connection.busy) {
+            connection.busy = true;
+            busy.add(connection);
+        }
+    }
+
+    private void retryBusy() {
+        for (int i = 0; i < busy.size(); i++) {
+            Connection connection = busy.get(i);
+
+            try {
+                if (!connection.stalled.isEmpty()) {
+                    offerStalled(connection);
+                    if (connection.stalled.isEmpty()) {
+                        handleFrames(connection); // frames which arrived while it was stalled
+                    }
+                }
+                flush(connection);
+                if (canResume(connection)) {
+                    handleFrames(connection);
+                }
+                if (connection.pendingFetch > 0) {
+                    serveFetch(connection);
+                }
+                flush(connection);
+            } catch (IOException | RuntimeException e) {
+                close(connection.key); // removes it from busy
+                i--;
+                continue;
+            }
+
+            if (connection.stalled.isEmpty() && connection.pendingFetch == 0 && !connection.blocked) {
+                connection.busy = false;
+                busy.remove(i--);
+            }
+        }
+    }
+
+    // one gathering write for both buffers
+    private void flush(Connection connection) throws IOException {
+        if (!connection.key.isValid() || (connection.control.position() == 0 && connection.data.position() == 0)) {
+            return;
+        }
+
+        connection.control.flip();
+        connection.data.flip();
+        connection.channel.write(connection.out);
+        connection.control.compact();
+        connection.data.compact();
+
+        updateInterest(connection);
+    }
+
+    private void updateInterest(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+
+        int ops = 0;
+        if (connection.stalled.isEmpty() && !connection.blocked) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (connection.control.position() > 0 || connection.data.position() > 0) {
+            ops |= SelectionKey.OP_WRITE; // socket buffer was full, continue once it has room
+        }
+        connection.key.interestOps(ops);
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        Object attachment = key.attachment();
+        if (attachment instanceof Connection connection) {
+            busy.remove(connection);
+        }
+
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // exception handling
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            // exception handling
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+
+        final ByteBuffer in = ByteBuffer.allocateDirect(2 * Frames.MAX_FRAME);
+        final ByteBuffer control = ByteBuffer.allocateDirect(4 * 1024);
+        final ByteBuffer data = ByteBuffer.allocateDirect(2 * Frames.MAX_FRAME);
+        final ByteBuffer[] out = {control, data};
+        final byte[] scratch = new byte[Frames.MAX_MESSAGE_BYTES];
+
+        final ArrayDeque<String> stalled = new ArrayDeque<>(); // decoded, but the queue was full
+        int unacked;      // messages of PUBLISH frames not yet answered with PUBLISHED
+        int pendingFetch; // max. messages of an unanswered FETCH
+        boolean blocked;  // complete frames in "in", but no room in "control" for their answers
+        boolean busy;     // in "busy"
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+}
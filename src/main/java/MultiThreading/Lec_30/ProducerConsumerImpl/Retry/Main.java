@@ -0,0 +1,60 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Retry;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Consumer;
+import MultiThreading.Lec_30.ProducerConsumerImpl.SharedQueue;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class Main {
+
+    private static final int MESSAGES = 100_000;
+    private static final int POISON_EVERY = 10_000; // these always fail, i.e. end up in the dead-letter queue
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        SharedQueue queue = new SharedQueue(1024, SharedQueue.Mode.CONDITION);
+        queue.setLogging(false);
+        queue.setRetryPolicy(new RetryPolicy(4, Duration.ofMillis(5), Duration.ofMillis(100)));
+
+        // flaky consumers: 20% of all attempts fail, poison messages fail every time
+        for (int i = 0; i < 3; i++) {
+            Thread consumer = new Thread(new Consumer(queue, 0) {
+                @Override
+                protected void process(Message message) {
+                    if (message.data().startsWith("poison") || ThreadLocalRandom.current().nextInt(100) < 20) {
+                        throw new IllegalStateException("processing failed: " + message.data());
+                    }
+                }
+            });
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            queue.publish(i % POISON_EVERY == 0 ? "poison-" + i : "Message-" + i);
+        }
+
+        // every message ends either acked or dead-lettered
+        while (queue.getAcked() + queue.getDeadLettered() + queue.getDeadLettersDropped() < MESSAGES) {
+            Thread.sleep(10);
+        }
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("acked: %,d  retried: %,d  dead-lettered: %,d (dropped: %d)  in %d ms%n",
+                queue.getAcked(), queue.getRetried(), queue.getDeadLettered(), queue.getDeadLettersDropped(),
+                nanos / 1_000_000);
+
+        // first few only (random failures: ~0.2^4 of all messages end up here too)
+        Message deadLetter;
+        for (int i = 0; i < 10 && (deadLetter = queue.pollDeadLetter()) != null; i++) {
+            System.out.println("dead letter: " + deadLetter);
+        }
+
+        System.out.println("Main method ends...");
+    }
+}
@@ -0,0 +1,41 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// How SharedQueue.nack() treats a failed message
+//
+// - attempt 1..maxAttempts-1: delivered again after initialBackoff * 2^(attempt-1), capped at maxBackoff
+// - attempt maxAttempts: moved to the dead-letter queue, not delivered again
+// - the delay is randomized between 50% and 100% of the backoff, so messages which failed together
+//   (e.g. downstream was down) don't all come back in the same tick
+public record RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, Duration.ofMillis(10), Duration.ofSeconds(1));
+
+    public RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("invalid backoff: " + initialBackoff + " .. " + maxBackoff);
+        }
+    }
+
+    // attempt: how many times the message has failed so far (1 = first failure)
+    public boolean isExhausted(int attempt) {
+        return attempt >= maxAttempts;
+    }
+
+    public long backoffNanos(int attempt) {
+        long initial = initialBackoff.toNanos();
+        long max = maxBackoff.toNanos();
+
+        // shift stops before it could overflow
+        int shift = Math.min(attempt - 1, 62);
+        long backoff = initial > (max >> shift) ? max : initial << shift;
+
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+}
@@ -1,73 +1,1273 @@
 package MultiThreading.Lec_30.ProducerConsumerImpl;
 
 
+import MultiThreading.Lec_30.ProducerConsumerImpl.Delayed.DelayedDelivery;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Logging.AsyncLogSink;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Logging.LogSink;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Metrics.QueueMetrics;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Retry.RetryPolicy;
 import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.FixedSizeQueue;
 import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.Message;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageIdGenerator;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.MessageSlot;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.RingBuffer;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.SlotHandler;
+import MultiThreading.Lec_30.ProducerConsumerImpl.Utils.SlotRingBuffer;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.SpinThenYieldWaitStrategy;
+import MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy.WaitStrategy;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 public class SharedQueue {
+
+    // which data structure (and which synchronization) the queue runs on
+    public enum Mode {
+        MONITOR,    // FixedSizeQueue guarded by "synchronized" + wait() / notifyAll()
+        CONDITION,  // FixedSizeQueue guarded by ReentrantLock, separate "notFull" / "notEmpty" wait sets + signal()
+        LOCK_FREE,  // RingBuffer, producers / consumers only CAS, no monitor lock at all
+        PREALLOCATED // SlotRingBuffer, like LOCK_FREE but payload is copied into reusable slots (no allocation per message)
+    }
+
+    public static final int DEFAULT_SLOT_CAPACITY = 64; // chars per slot (PREALLOCATED mode)
+    public static final Supplier<WaitStrategy> DEFAULT_WAIT_STRATEGY = SpinThenYieldWaitStrategy::new;
+    public static final int DEAD_LETTER_CAPACITY = 1024; // dead letters beyond this are dropped (and counted)
+    public static final int DEFAULT_METRICS_SAMPLE_RATE = 32; // 1 of 32 messages is timed
+
+    // wait / lock hold start when nothing is timed (not waited yet, metrics / tracking off); nanoTime() can be
+    // any long, 0 too, same reasoning as Message.NOT_STAMPED
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
     private final int size;
-    private final FixedSizeQueue queue;
+    private final Mode mode;
+    private final FixedSizeQueue queue;     // MONITOR, CONDITION mode
+    private final RingBuffer<Message> ring; // LOCK_FREE mode
+    private final SlotRingBuffer slotRing;  // PREALLOCATED mode
+    private final int slotCapacity;
+
+    // LOCK_FREE, PREALLOCATED mode: what producers do while the ring is full, consumers while it is empty
+    private final WaitStrategy producerWait;
+    private final WaitStrategy consumerWait;
+    private final BooleanSupplier notFullCheck;  // created once, so waiting doesn't allocate
+    private final BooleanSupplier notEmptyCheck;
+
+    // CONDITION mode: producers only wait on "notFull", consumers only wait on "notEmpty"
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    // wakeups = every return from wait() / await()
+    // productive wakeups = waits which ended with the thread actually publishing / consuming
+    // (wakeups - productiveWakeups = threads which woke-up just to go back to wait)
+    private final LongAdder wakeups = new LongAdder();
+    private final LongAdder productiveWakeups = new LongAdder();
+
+    // formatting + printing happens on the sink's own thread, not while holding the lock
+    private volatile LogSink logSink = AsyncLogSink.getDefault();
+
+    // created on the first publishDelayed() / nack() call (starts the ticker thread)
+    private volatile DelayedDelivery delayedDelivery;
+    // created on the first message which used up its attempts
+    private volatile RingBuffer<Message> deadLetters;
+    private final Object lazyInit = new Object();
+
+    // what nack() does with a failed message
+    private volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder deadLettersDropped = new LongAdder();
+
+    // MONITOR, CONDITION mode: how long the lock is held per publish / consume (excluding waiting)
+    private volatile boolean lockHoldTracking = false;
+    private final LongAdder lockHoldNanos = new LongAdder();
+    private final LongAdder lockHolds = new LongAdder();
+
+    // off by default: queue latency, producer block / consumer idle time, depth high-water mark
+    private volatile boolean metricsEnabled = false;
+    private volatile long metricsSampleMask;
+    private final QueueMetrics metrics = new QueueMetrics(this::size);
+
+    // called after every publish (on the publishing thread), e.g. QueuePublisher wakes up a subscriber
+    private volatile Runnable publishListener;
 
     public SharedQueue(int size) {
-        this.size = size;
-        this.queue = new FixedSizeQueue(size);
+        this(size, Mode.MONITOR);
+    }
+
+    public SharedQueue(int size, Mode mode) {
+        this(size, mode, DEFAULT_WAIT_STRATEGY);
+    }
+
+    // waitStrategy: only used by LOCK_FREE / PREALLOCATED mode, one instance is created for producers and one for consumers
+    public SharedQueue(int size, Mode mode, Supplier<WaitStrategy> waitStrategy) {
+        this(size, mode, waitStrategy, DEFAULT_SLOT_CAPACITY);
+    }
+
+    // slotCapacity: max. chars of one message, only used by PREALLOCATED mode
+    public SharedQueue(int size, Mode mode, Supplier<WaitStrategy> waitStrategy, int slotCapacity) {
+        this.mode = mode;
+        this.slotCapacity = slotCapacity;
+        this.producerWait = waitStrategy.get();
+        this.consumerWait = waitStrategy.get();
+
+        if (mode == Mode.LOCK_FREE) {
+            this.ring = new RingBuffer<>(size);
+            this.slotRing = null;
+            this.queue = null;
+            this.size = ring.capacity(); // rounded up to power of two
+        } else if (mode == Mode.PREALLOCATED) {
+            this.slotRing = new SlotRingBuffer(size, slotCapacity);
+            this.ring = null;
+            this.queue = null;
+            this.size = slotRing.capacity(); // rounded up to power of two
+        } else {
+            this.queue = new FixedSizeQueue(size);
+            this.ring = null;
+            this.slotRing = null;
+            this.size = size;
+        }
+
+        this.notFullCheck = () -> size() < this.size;
+        this.notEmptyCheck = () -> size() > 0;
+    }
+
+    // unique across threads (and nodes), sortable by publish time, see MessageIdGenerator
+    private long genUniqueMessageID() {
+        return MessageIdGenerator.DEFAULT.nextId();
+    }
+
+    private Message newMessage(String data) {
+        long ID = genUniqueMessageID();
+        return new Message(data, ID, 0, enqueueStamp(ID));
+    }
+
+    public void publish(String data) {
+        switch (mode) {
+            case LOCK_FREE -> publishLockFree(newMessage(data));
+            case PREALLOCATED -> publishPreallocated(data, genUniqueMessageID(), 0);
+            case CONDITION -> publishCondition(newMessage(data));
+            default -> publishMonitor(newMessage(data));
+        }
+        published();
+    }
+
+    // publishes an already created message as it is (same ID, same attempt), e.g. a retry
+    public void publish(Message message) {
+        switch (mode) {
+            case LOCK_FREE -> publishLockFree(restamp(message));
+            case PREALLOCATED -> publishPreallocated(message.data(), message.ID(), message.attempt());
+            case CONDITION -> publishCondition(restamp(message));
+            default -> publishMonitor(restamp(message));
+        }
+        published();
     }
 
-    private int genUniqueMessageID() {
-        return (int) (Math.random() * 1000);
+    // PREALLOCATED mode: "data" is copied into the slot, so a reused StringBuilder publishes without allocation
+    public void publish(CharSequence data) {
+        if (mode == Mode.PREALLOCATED) {
+            publishPreallocated(data, genUniqueMessageID(), 0);
+            published();
+        } else {
+            publish(data.toString());
+        }
+    }
+
+    public Message consume() {
+        return switch (mode) {
+            case LOCK_FREE -> consumeLockFree();
+            case PREALLOCATED -> consumePreallocated();
+            case CONDITION -> consumeCondition();
+            default -> consumeMonitor();
+        };
     }
 
-    public synchronized void publish(String data) {
+    // PREALLOCATED mode: "handler" reads the message in place (no copy, no allocation)
+    // other modes: handler gets a one-off slot holding a copy of the consumed message
+    public void consume(SlotHandler handler) {
+        if (mode != Mode.PREALLOCATED) {
+            Message message = consume();
+            MessageSlot slot = new MessageSlot(message.data().length());
+            slot.set(message.data(), message.ID(), message.attempt(), message.enqueuedNanos());
+            handler.onMessage(slot);
+            return;
+        }
+
+        long pos = claimRead();
+        try {
+            handler.onMessage(slotRing.slot(pos));
+        } finally {
+            slotRing.release(pos);
+            producerWait.signalAll();
+        }
+    }
+
+    // publishes every element of "data" (waits whenever the queue is full)
+    // the lock is taken once, messages are copied in chunks and waiting consumers are woken-up once per chunk
+    public void publishAll(Collection<String> data) {
+        switch (mode) {
+            case LOCK_FREE -> data.forEach(d -> publishLockFree(newMessage(d)));
+            case PREALLOCATED -> data.forEach(d -> publishPreallocated(d, genUniqueMessageID(), 0));
+            // lazy: the message (and its ID) is created only when it is copied into the queue
+            case CONDITION -> publishAllCondition(data.stream().map(this::newMessage).iterator(), data.size());
+            default -> publishAllMonitor(data.stream().map(this::newMessage).iterator(), data.size());
+        }
+        published();
+    }
+
+    // publishAll() for already created messages (same ID, same attempt), e.g. delayed messages / retries
+    public void publishAllMessages(Collection<Message> messages) {
+        switch (mode) {
+            case LOCK_FREE -> messages.forEach(m -> publishLockFree(restamp(m)));
+            case PREALLOCATED -> messages.forEach(m -> publishPreallocated(m.data(), m.ID(), m.attempt()));
+            case CONDITION -> publishAllCondition(messages.stream().map(this::restamp).iterator(), messages.size());
+            default -> publishAllMonitor(messages.stream().map(this::restamp).iterator(), messages.size());
+        }
+        published();
+    }
+
+    // waits till at least 1 message is available, then moves up to "max" messages into "dest"
+    // returns how many messages were moved (max 0: returns 0 right away, same in every mode)
+    public int drainTo(Collection<Message> dest, int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max must not be negative: " + max);
+        }
+        if (max == 0) {
+            return 0;
+        }
+
+        return switch (mode) {
+            case LOCK_FREE -> drainToLockFree(dest, max);
+            case PREALLOCATED -> drainToPreallocated(dest, max);
+            case CONDITION -> drainToCondition(dest, max);
+            default -> drainToMonitor(dest, max);
+        };
+    }
+
+    // message becomes visible to consumers only after "delay" (1 ms precision), never blocks
+    // PREALLOCATED: the slot size is checked here, on the caller's thread, not when the ticker publishes it
+    public void publishDelayed(String data, Duration delay) {
+        if (mode == Mode.PREALLOCATED) {
+            checkSlotCapacity(data);
+        }
+        delayedDelivery().schedule(newMessage(data), delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private DelayedDelivery delayedDelivery() {
+        DelayedDelivery delivery = delayedDelivery;
+
+        // double-checked: the lock is only taken until the first delayed message
+        if (delivery == null) {
+            synchronized (lazyInit) {
+                delivery = delayedDelivery;
+                if (delivery == null) {
+                    delivery = new DelayedDelivery(this, 1, TimeUnit.MILLISECONDS);
+                    delayedDelivery = delivery;
+                }
+            }
+        }
+        return delivery;
+    }
+
+    // includes nack-ed messages waiting for their backoff
+    public long getPendingDelayed() {
+        DelayedDelivery delivery = delayedDelivery;
+        return delivery == null ? 0 : delivery.pending();
+    }
+
+    // like publish(), but returns false right away when the queue is full (never waits)
+    public boolean offer(String data) {
+        boolean offered = switch (mode) {
+            case LOCK_FREE -> offerLockFree(data);
+            case PREALLOCATED -> offerPreallocated(data);
+            case CONDITION -> offerCondition(data);
+            default -> offerMonitor(data);
+        };
+
+        if (offered) {
+            published();
+        }
+        return offered;
+    }
+
+    // like consume(), but returns null right away when the queue is empty (never waits)
+    public Message poll() {
+        return switch (mode) {
+            case LOCK_FREE -> pollLockFree();
+            case PREALLOCATED -> pollPreallocated();
+            case CONDITION -> pollCondition();
+            default -> pollMonitor();
+        };
+    }
+
+    // like consume(SlotHandler), but returns false right away when the queue is empty (never waits)
+    public boolean poll(SlotHandler handler) {
+        if (mode != Mode.PREALLOCATED) {
+            Message message = poll();
+            if (message == null) {
+                return false;
+            }
+            MessageSlot slot = new MessageSlot(message.data().length());
+            slot.set(message.data(), message.ID(), message.attempt(), message.enqueuedNanos());
+            handler.onMessage(slot);
+            return true;
+        }
+
+        long pos = slotRing.tryClaimRead();
+        if (pos < 0) {
+            return false;
+        }
+
+        recordQueueLatency(slotRing.slot(pos).enqueuedNanos());
+        try {
+            handler.onMessage(slotRing.slot(pos));
+        } finally {
+            slotRing.release(pos);
+            producerWait.signalAll();
+        }
+        return true;
+    }
+
+    // consume() already removed the message, ack() only records that it was processed
+    public void ack(Message message) {
+        acked.increment();
+    }
+
+    // processing failed: the message is published again after the retry policy's backoff (attempt + 1),
+    // or moved to the dead-letter queue once all its attempts are used up
+    // never blocks: the retry waits in the delayed-delivery wheel, not in the consumer thread
+    public void nack(Message message) {
+        Message retry = message.nextAttempt();
+        RetryPolicy policy = retryPolicy;
+
+        if (policy.isExhausted(retry.attempt())) {
+            deadLetter(retry);
+            return;
+        }
+
+        long backoffNanos = policy.backoffNanos(retry.attempt());
+        delayedDelivery().schedule(retry, backoffNanos, TimeUnit.NANOSECONDS);
+        retried.increment();
+
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} failed (attempt %d) in consumer thread: %s, retry in %d us",
+                    retry.ID(), retry.data(), retry.attempt(), Thread.currentThread().getName(), backoffNanos / 1000);
+        }
+    }
+
+    // consume(SlotHandler) versions: the slot is copied only on the failure path
+    public void ack(MessageSlot slot) {
+        acked.increment();
+    }
+
+    public void nack(MessageSlot slot) {
+        nack(slot.toMessage());
+    }
+
+    // straight to the dead-letter queue, e.g. a consumer found a message it can never process
+    public void deadLetter(Message message) {
+        RingBuffer<Message> dlq = deadLetters;
+
+        if (dlq == null) {
+            synchronized (lazyInit) {
+                dlq = deadLetters;
+                if (dlq == null) {
+                    dlq = new RingBuffer<>(DEAD_LETTER_CAPACITY);
+                    deadLetters = dlq;
+                }
+            }
+        }
+
+        // bounded: nobody may be draining it, a full dead-letter queue must not stop the consumers
+        if (dlq.offer(message)) {
+            deadLettered.increment();
+        } else {
+            deadLettersDropped.increment();
+        }
+
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} moved to dead-letter queue after %d attempts by consumer thread: %s",
+                    message.ID(), message.data(), message.attempt(), Thread.currentThread().getName());
+        }
+    }
+
+    // returns null when there is no dead letter (never waits)
+    public Message pollDeadLetter() {
+        RingBuffer<Message> dlq = deadLetters;
+        return dlq == null ? null : dlq.poll();
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    private synchronized void publishMonitor(Message newMessage) {
 
         // queue is empty
+        boolean waited = false;
+        long waitStart = NOT_TIMED;
         while (queue.size() == size) {
-            System.out.println("queue is full...Producer thread: " + Thread.currentThread().getName() + " waiting...");
+            if (logSink != LogSink.OFF) {
+                log("queue is full...Producer thread: %s waiting...", Thread.currentThread().getName());
+            }
+
+            if (!waited) {
+                waitStart = waitStart();
+            }
 
             try {
                 wait(); // releases the monitor lock
             } catch (Exception e) {
                 // exception handing
             }
+
+            wakeups.increment();
+            waited = true;
         }
 
-        // create new message
-        Message newMessage = new Message(data, genUniqueMessageID());
+        if (waited) {
+            productiveWakeups.increment();
+            recordProducerBlock(waitStart);
+            newMessage = restamp(newMessage); // time spent blocked is not time spent in the queue
+        }
+
+        long holdStart = lockHoldStart();
 
         // push into the queue
         queue.push(newMessage);
+        recordDepth(newMessage, queue.size());
 
-        System.out.printf(
-                "{ID: '%d', data: '%s'} published by producer thread: " + Thread.currentThread().getName() + "%n",
-                newMessage.ID(),
-                newMessage.data()
-        );
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} published by producer thread: %s",
+                    newMessage.ID(), newMessage.data(), Thread.currentThread().getName());
+        }
 
         // to wake-up consumer threads (if any waiting)
         notifyAll();
+
+        lockHoldEnd(holdStart);
     }
 
-    public synchronized void consume() {
+    private synchronized Message consumeMonitor() {
 
         // when queue is empty
+        boolean waited = false;
+        long waitStart = NOT_TIMED;
         while (queue.size() == 0) {
-            System.out.println("Queue is empty!...Consumer thread: " + Thread.currentThread().getName() + " waiting...");
+            if (logSink != LogSink.OFF) {
+                log("Queue is empty!...Consumer thread: %s waiting...", Thread.currentThread().getName());
+            }
+
+            if (!waited) {
+                waitStart = waitStart();
+            }
 
             try {
                 wait(); // releases the monitor lock
             } catch (Exception e) {
                 // exception handling
             }
+
+            wakeups.increment();
+            waited = true;
+        }
+
+        if (waited) {
+            productiveWakeups.increment();
+            recordConsumerIdle(waitStart);
         }
 
+        long holdStart = lockHoldStart();
+
         Message message = queue.pop();
+        recordQueueLatency(message.enqueuedNanos());
 
-        System.out.printf(
-                "{ID: '%d', data: '%s'} consumed by consumer thread: " + Thread.currentThread().getName() + "%n",
-                message.ID(),
-                message.data()
-        );
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} consumed by consumer thread: %s",
+                    message.ID(), message.data(), Thread.currentThread().getName());
+        }
 
         // to wake-up producer threads (if any waiting)
         notifyAll();
+
+        lockHoldEnd(holdStart);
+        return message;
+    }
+
+    private synchronized boolean offerMonitor(String data) {
+        if (queue.size() == size) {
+            return false;
+        }
+
+        Message newMessage = newMessage(data);
+        queue.push(newMessage);
+        recordDepth(newMessage, queue.size());
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} published by producer thread: %s",
+                    newMessage.ID(), newMessage.data(), Thread.currentThread().getName());
+        }
+
+        notifyAll();
+        return true;
+    }
+
+    private synchronized Message pollMonitor() {
+        if (queue.size() == 0) {
+            return null;
+        }
+
+        Message message = queue.pop();
+        recordQueueLatency(message.enqueuedNanos());
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} consumed by consumer thread: %s",
+                    message.ID(), message.data(), Thread.currentThread().getName());
+        }
+
+        notifyAll();
+        return message;
+    }
+
+    private synchronized void publishAllMonitor(Iterator<Message> it, int total) {
+        Message[] batch = new Message[Math.min(total, size)];
+
+        while (it.hasNext()) {
+            boolean waited = false;
+            long waitStart = NOT_TIMED;
+            while (queue.size() == size) {
+                if (logSink != LogSink.OFF) {
+                    log("queue is full...Producer thread: %s waiting...", Thread.currentThread().getName());
+                }
+
+                if (!waited) {
+                    waitStart = waitStart();
+                }
+
+                try {
+                    wait(); // releases the monitor lock
+                } catch (Exception e) {
+                    // exception handing
+                }
+
+                wakeups.increment();
+                waited = true;
+            }
+
+            if (waited) {
+                productiveWakeups.increment();
+                recordProducerBlock(waitStart);
+            }
+
+            // fill as many messages as there are free slots
+            int count = 0;
+            int free = size - queue.size();
+            while (count < free && it.hasNext()) {
+                batch[count++] = it.next();
+            }
+
+            queue.pushAll(batch, 0, count);
+            recordDepth(queue.size());
+            if (logSink != LogSink.OFF) {
+                log("%d messages published by producer thread: %s", count, Thread.currentThread().getName());
+            }
+
+            // once per chunk, not once per message
+            notifyAll();
+        }
+    }
+
+    private synchronized int drainToMonitor(Collection<Message> dest, int max) {
+        boolean waited = false;
+        long waitStart = NOT_TIMED;
+        while (queue.size() == 0) {
+            if (logSink != LogSink.OFF) {
+                log("Queue is empty!...Consumer thread: %s waiting...", Thread.currentThread().getName());
+            }
+
+            if (!waited) {
+                waitStart = waitStart();
+            }
+
+            try {
+                wait(); // releases the monitor lock
+            } catch (Exception e) {
+                // exception handling
+            }
+
+            wakeups.increment();
+            waited = true;
+        }
+
+        if (waited) {
+            productiveWakeups.increment();
+            recordConsumerIdle(waitStart);
+        }
+
+        int count = popAllInto(dest, max);
+        if (logSink != LogSink.OFF) {
+            log("%d messages consumed by consumer thread: %s", count, Thread.currentThread().getName());
+        }
+
+        notifyAll();
+        return count;
+    }
+
+    private void publishCondition(Message newMessage) {
+        lock.lock();
+
+        try {
+            if (awaitNotFull()) {
+                newMessage = restamp(newMessage); // time spent blocked is not time spent in the queue
+            }
+            long holdStart = lockHoldStart();
+
+            queue.push(newMessage);
+            recordDepth(newMessage, queue.size());
+
+            if (logSink != LogSink.OFF) {
+                log("{ID: '%d', data: '%s'} published by producer thread: %s",
+                        newMessage.ID(), newMessage.data(), Thread.currentThread().getName());
+            }
+
+            // one new message can be taken by only one consumer, so wake-up exactly one (if any waiting)
+            notEmpty.signal();
+
+            lockHoldEnd(holdStart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Message consumeCondition() {
+        lock.lock();
+
+        try {
+            awaitNotEmpty();
+            long holdStart = lockHoldStart();
+
+            Message message = queue.pop();
+            recordQueueLatency(message.enqueuedNanos());
+
+            if (logSink != LogSink.OFF) {
+                log("{ID: '%d', data: '%s'} consumed by consumer thread: %s",
+                        message.ID(), message.data(), Thread.currentThread().getName());
+            }
+
+            // one free slot can be filled by only one producer, so wake-up exactly one (if any waiting)
+            notFull.signal();
+
+            lockHoldEnd(holdStart);
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean offerCondition(String data) {
+        lock.lock();
+
+        try {
+            if (queue.size() == size) {
+                return false;
+            }
+
+            Message newMessage = newMessage(data);
+            queue.push(newMessage);
+            recordDepth(newMessage, queue.size());
+            if (logSink != LogSink.OFF) {
+                log("{ID: '%d', data: '%s'} published by producer thread: %s",
+                        newMessage.ID(), newMessage.data(), Thread.currentThread().getName());
+            }
+
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Message pollCondition() {
+        lock.lock();
+
+        try {
+            if (queue.size() == 0) {
+                return null;
+            }
+
+            Message message = queue.pop();
+            recordQueueLatency(message.enqueuedNanos());
+            if (logSink != LogSink.OFF) {
+                log("{ID: '%d', data: '%s'} consumed by consumer thread: %s",
+                        message.ID(), message.data(), Thread.currentThread().getName());
+            }
+
+            notFull.signal();
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publishAllCondition(Iterator<Message> it, int total) {
+        Message[] batch = new Message[Math.min(total, size)];
+
+        lock.lock();
+
+        try {
+            while (it.hasNext()) {
+                awaitNotFull();
+
+                int count = 0;
+                int free = size - queue.size();
+                while (count < free && it.hasNext()) {
+                    batch[count++] = it.next();
+                }
+
+                queue.pushAll(batch, 0, count);
+                recordDepth(queue.size());
+                if (logSink != LogSink.OFF) {
+                    log("%d messages published by producer thread: %s", count, Thread.currentThread().getName());
+                }
+
+                // "count" new messages can satisfy at most "count" consumers
+                signal(notEmpty, count);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int drainToCondition(Collection<Message> dest, int max) {
+        lock.lock();
+
+        try {
+            awaitNotEmpty();
+
+            int count = popAllInto(dest, max);
+            if (logSink != LogSink.OFF) {
+                log("%d messages consumed by consumer thread: %s", count, Thread.currentThread().getName());
+            }
+
+            // "count" free slots can satisfy at most "count" producers
+            signal(notFull, count);
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // must be called while holding "lock", returns whether it had to wait
+    private boolean awaitNotFull() {
+        boolean waited = false;
+        long waitStart = NOT_TIMED;
+        while (queue.size() == size) {
+            if (logSink != LogSink.OFF) {
+                log("queue is full...Producer thread: %s waiting...", Thread.currentThread().getName());
+            }
+
+            if (!waited) {
+                waitStart = waitStart();
+            }
+
+            try {
+                notFull.await(); // releases the lock, waits only with other producers
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+
+            wakeups.increment();
+            waited = true;
+        }
+
+        if (waited) {
+            productiveWakeups.increment();
+            recordProducerBlock(waitStart);
+        }
+        return waited;
+    }
+
+    // must be called while holding "lock"
+    private void awaitNotEmpty() {
+        boolean waited = false;
+        long waitStart = NOT_TIMED;
+        while (queue.size() == 0) {
+            if (logSink != LogSink.OFF) {
+                log("Queue is empty!...Consumer thread: %s waiting...", Thread.currentThread().getName());
+            }
+
+            if (!waited) {
+                waitStart = waitStart();
+            }
+
+            try {
+                notEmpty.await(); // releases the lock, waits only with other consumers
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+
+            wakeups.increment();
+            waited = true;
+        }
+
+        if (waited) {
+            productiveWakeups.increment();
+            recordConsumerIdle(waitStart);
+        }
+    }
+
+    // wakes-up at most "count" waiters, stops early when nobody is waiting anymore
+    private void signal(Condition condition, int count) {
+        for (int i = 0; i < count && lock.hasWaiters(condition); i++) {
+            condition.signal();
+        }
+    }
+
+    // must be called while holding the monitor / lock
+    private int popAllInto(Collection<Message> dest, int max) {
+        Message[] batch = new Message[Math.min(max, queue.size())];
+        int count = queue.popAll(batch, batch.length);
+
+        for (int i = 0; i < count; i++) {
+            recordQueueLatency(batch[i].enqueuedNanos());
+            dest.add(batch[i]);
+        }
+        return count;
+    }
+
+    private void publishLockFree(Message newMessage) {
+        // queue is full: there is no monitor to wait() on, the wait strategy decides how to wait
+        if (!ring.offer(newMessage)) {
+            long waitStart = waitStart();
+            boolean restamped = false;
+            do {
+                try {
+                    producerWait.waitFor(notFullCheck);
+                } catch (InterruptedException e) {
+                    // exception handling
+                }
+
+                // time spent blocked is not time spent in the queue; once only, if another producer takes
+                // the free slot first the next wait is a few ns, not worth a new Message per retry
+                if (!restamped) {
+                    newMessage = restamp(newMessage);
+                    restamped = true;
+                }
+            } while (!ring.offer(newMessage));
+
+            recordProducerBlock(waitStart);
+        }
+
+        if (newMessage.isStamped()) {
+            metrics.recordDepth(ring.size());
+        }
+
+        // to wake-up consumer threads (only blocking strategy really waits for it)
+        consumerWait.signalAll();
+
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} published by producer thread: %s",
+                    newMessage.ID(), newMessage.data(), Thread.currentThread().getName());
+        }
+    }
+
+    private Message consumeLockFree() {
+        Message message;
+
+        // queue is empty: same as the producer side
+        long waitStart = NOT_TIMED;
+        while ((message = ring.poll()) == null) {
+            if (waitStart == NOT_TIMED) {
+                waitStart = waitStart();
+            }
+
+            try {
+                consumerWait.waitFor(notEmptyCheck);
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+
+        recordConsumerIdle(waitStart);
+        recordQueueLatency(message.enqueuedNanos());
+        producerWait.signalAll();
+
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} consumed by consumer thread: %s",
+                    message.ID(), message.data(), Thread.currentThread().getName());
+        }
+
+        return message;
+    }
+
+    private boolean offerLockFree(String data) {
+        Message newMessage = newMessage(data);
+        if (!ring.offer(newMessage)) {
+            return false;
+        }
+
+        if (newMessage.isStamped()) {
+            metrics.recordDepth(ring.size());
+        }
+
+        consumerWait.signalAll();
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} published by producer thread: %s",
+                    newMessage.ID(), newMessage.data(), Thread.currentThread().getName());
+        }
+        return true;
+    }
+
+    private Message pollLockFree() {
+        Message message = ring.poll();
+
+        if (message != null) {
+            recordQueueLatency(message.enqueuedNanos());
+            producerWait.signalAll();
+            if (logSink != LogSink.OFF) {
+                log("{ID: '%d', data: '%s'} consumed by consumer thread: %s",
+                        message.ID(), message.data(), Thread.currentThread().getName());
+            }
+        }
+        return message;
+    }
+
+    private int drainToLockFree(Collection<Message> dest, int max) {
+        // wait for the first one, then take whatever is already there (no waiting)
+        dest.add(consumeLockFree());
+
+        int count = 1;
+        Message message;
+        while (count < max && (message = ring.poll()) != null) {
+            recordQueueLatency(message.enqueuedNanos());
+            dest.add(message);
+            count++;
+        }
+
+        // once for the whole batch
+        producerWait.signalAll();
+        return count;
+    }
+
+    private void checkSlotCapacity(CharSequence data) {
+        if (data.length() > slotCapacity) {
+            throw new IllegalArgumentException("payload of " + data.length() + " chars doesn't fit in slot of " + slotCapacity);
+        }
+    }
+
+    private void publishPreallocated(CharSequence data, long ID, int attempt) {
+        // checked before claiming: a claimed slot must always be published, otherwise consumers stop at its position
+        checkSlotCapacity(data);
+
+        // claim a free slot (waits like LOCK_FREE mode while the ring is full)
+        long pos;
+        long waitStart = NOT_TIMED;
+        while ((pos = slotRing.tryClaim()) < 0) {
+            if (waitStart == NOT_TIMED) {
+                waitStart = waitStart();
+            }
+
+            try {
+                producerWait.waitFor(notFullCheck);
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+
+        recordProducerBlock(waitStart);
+
+        // stamped after claiming: the slot holds it, so metrics don't allocate in this mode either
+        long stamp = enqueueStamp(ID);
+        slotRing.slot(pos).set(data, ID, attempt, stamp);
+        slotRing.publish(pos);
+
+        if (stamp != Message.NOT_STAMPED) {
+            metrics.recordDepth(slotRing.size());
+        }
+
+        consumerWait.signalAll();
+
+        // checked here, so that the varargs array isn't created when logging is off
+        // (toString(): the caller may reuse "data" before the async sink formats it)
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} published by producer thread: %s", ID, data.toString(), Thread.currentThread().getName());
+        }
+    }
+
+    // returns the claimed position, caller must release it
+    private long claimRead() {
+        long pos;
+        long waitStart = NOT_TIMED;
+        while ((pos = slotRing.tryClaimRead()) < 0) {
+            if (waitStart == NOT_TIMED) {
+                waitStart = waitStart();
+            }
+
+            try {
+                consumerWait.waitFor(notEmptyCheck);
+            } catch (InterruptedException e) {
+                // exception handling
+            }
+        }
+
+        recordConsumerIdle(waitStart);
+        recordQueueLatency(slotRing.slot(pos).enqueuedNanos());
+
+        if (logSink != LogSink.OFF) {
+            MessageSlot slot = slotRing.slot(pos);
+            if (logSink != LogSink.OFF) {
+                log("{ID: '%d', data: '%s'} consumed by consumer thread: %s", slot.ID(), slot.toString(), Thread.currentThread().getName());
+            }
+        }
+        return pos;
+    }
+
+    // copies the slot into a Message, so it can be released right away
+    private Message consumePreallocated() {
+        long pos = claimRead();
+
+        try {
+            return slotRing.slot(pos).toMessage();
+        } finally {
+            slotRing.release(pos);
+            producerWait.signalAll();
+        }
+    }
+
+    private boolean offerPreallocated(CharSequence data) {
+        checkSlotCapacity(data);
+
+        long pos = slotRing.tryClaim();
+        if (pos < 0) {
+            return false;
+        }
+
+        long ID = genUniqueMessageID();
+        long stamp = enqueueStamp(ID);
+        slotRing.slot(pos).set(data, ID, 0, stamp);
+        slotRing.publish(pos);
+        consumerWait.signalAll();
+
+        if (stamp != Message.NOT_STAMPED) {
+            metrics.recordDepth(slotRing.size());
+        }
+
+        if (logSink != LogSink.OFF) {
+            log("{ID: '%d', data: '%s'} published by producer thread: %s", ID, data.toString(), Thread.currentThread().getName());
+        }
+        return true;
+    }
+
+    private Message pollPreallocated() {
+        long pos = slotRing.tryClaimRead();
+        if (pos < 0) {
+            return null;
+        }
+
+        recordQueueLatency(slotRing.slot(pos).enqueuedNanos());
+        try {
+            return slotRing.slot(pos).toMessage();
+        } finally {
+            slotRing.release(pos);
+            producerWait.signalAll();
+        }
+    }
+
+    private int drainToPreallocated(Collection<Message> dest, int max) {
+        dest.add(consumePreallocated());
+
+        int count = 1;
+        long pos;
+        while (count < max && (pos = slotRing.tryClaimRead()) >= 0) {
+            try {
+                recordQueueLatency(slotRing.slot(pos).enqueuedNanos());
+                dest.add(slotRing.slot(pos).toMessage());
+            } finally {
+                slotRing.release(pos);
+            }
+            count++;
+        }
+
+        producerWait.signalAll();
+        return count;
+    }
+
+    private void published() {
+        Runnable listener = publishListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    // only one listener per queue (replaces the previous one), null = none
+    // runs on every publishing thread, so it must be quick and must not block
+    public void setPublishListener(Runnable publishListener) {
+        this.publishListener = publishListener;
+    }
+
+    // callers check "logSink != LogSink.OFF" first: with logging off, no varargs array, no boxed ID and no
+    // Thread.getName() on the publish / consume paths
+    private void log(String format, Object... args) {
+        logSink.log(format, args);
+    }
+
+    // turn off per message printing (e.g. for benchmarks)
+    public void setLogging(boolean logging) {
+        this.logSink = logging ? AsyncLogSink.getDefault() : LogSink.OFF;
+    }
+
+    public void setLogSink(LogSink logSink) {
+        this.logSink = logSink;
+    }
+
+    private long lockHoldStart() {
+        return lockHoldTracking ? System.nanoTime() : NOT_TIMED;
+    }
+
+    private void lockHoldEnd(long start) {
+        if (start != NOT_TIMED) {
+            lockHoldNanos.add(System.nanoTime() - start);
+            lockHolds.increment();
+        }
+    }
+
+    // off by default, costs 2 System.nanoTime() calls per publish / consume
+    public void setLockHoldTracking(boolean lockHoldTracking) {
+        this.lockHoldTracking = lockHoldTracking;
+    }
+
+    public double getAverageLockHoldNanos() {
+        long holds = lockHolds.sum();
+        return holds == 0 ? 0 : (double) lockHoldNanos.sum() / holds;
+    }
+
+    // Message.NOT_STAMPED = not sampled (or metrics are off), nothing is recorded for this message
+    // sampled by ID: a nanoTime() pair costs more than a lock-free publish + consume, so only 1 of
+    // "sampleRate" messages is timed (IDs come in aligned blocks of 32, so the low bits rotate evenly;
+    // at low rates every block holds just one message, i.e. more messages are sampled, which is fine)
+    private long enqueueStamp(long ID) {
+        return metricsEnabled && (ID & metricsSampleMask) == 0 ? System.nanoTime() : Message.NOT_STAMPED;
+    }
+
+    private long waitStart() {
+        return metricsEnabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    // new enqueue time for a message which was in the queue before / waited for a free slot
+    // allocates only for sampled messages
+    private Message restamp(Message message) {
+        long stamp = enqueueStamp(message.ID());
+        return stamp == message.enqueuedNanos() ? message : message.withEnqueuedNanos(stamp);
+    }
+
+    private void recordQueueLatency(long enqueuedNanos) {
+        if (enqueuedNanos != Message.NOT_STAMPED) {
+            metrics.recordQueueLatency(enqueuedNanos);
+        }
+    }
+
+    private void recordProducerBlock(long waitStart) {
+        if (waitStart != NOT_TIMED) {
+            metrics.recordProducerBlock(waitStart);
+            metrics.recordDepth(size); // a producer only waits on a full queue
+        }
+    }
+
+    private void recordConsumerIdle(long waitStart) {
+        if (waitStart != NOT_TIMED) {
+            metrics.recordConsumerIdle(waitStart);
+        }
+    }
+
+    // batches: once per batch
+    private void recordDepth(int depth) {
+        if (metricsEnabled) {
+            metrics.recordDepth(depth);
+        }
+    }
+
+    // single messages: only sampled ones
+    private void recordDepth(Message message, int depth) {
+        if (message.isStamped()) {
+            metrics.recordDepth(depth);
+        }
+    }
+
+    public void setMetrics(boolean metricsEnabled) {
+        setMetrics(metricsEnabled, DEFAULT_METRICS_SAMPLE_RATE);
+    }
+
+    // sampleRate: 1 of "sampleRate" messages is timed (power of two, max. 32, 1 = every message)
+    // waits are always timed (they cost far more than the 2 nanoTime() calls)
+    public void setMetrics(boolean metricsEnabled, int sampleRate) {
+        if (Integer.bitCount(sampleRate) != 1 || sampleRate > 32) {
+            throw new IllegalArgumentException("sampleRate must be a power of two <= 32: " + sampleRate);
+        }
+
+        this.metricsSampleMask = sampleRate - 1;
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    // snapshot() / MetricsDump to read them
+    public QueueMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int size() {
+        if (mode == Mode.LOCK_FREE) {
+            return ring.size();
+        }
+
+        if (mode == Mode.PREALLOCATED) {
+            return slotRing.size();
+        }
+
+        if (mode == Mode.CONDITION) {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        synchronized (this) {
+            return queue.size();
+        }
+    }
+
+    public long getWakeups() {
+        return wakeups.sum();
+    }
+
+    public long getProductiveWakeups() {
+        return productiveWakeups.sum();
+    }
+
+    public long getAcked() {
+        return acked.sum();
+    }
+
+    // nack-ed messages which were scheduled for another attempt
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getDeadLettered() {
+        return deadLettered.sum();
+    }
+
+    // dead letters lost because the dead-letter queue was full
+    public long getDeadLettersDropped() {
+        return deadLettersDropped.sum();
+    }
+
+    public int capacity() {
+        return size;
     }
 }
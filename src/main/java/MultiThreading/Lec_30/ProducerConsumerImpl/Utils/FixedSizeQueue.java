@@ -55,6 +55,58 @@ public class FixedSizeQueue {
         return el;
     }
 
+    // batch push: copies as many messages as fit (at most 2 System.arraycopy calls, because of wrap-around)
+    // returns how many messages were pushed
+    public int pushAll(Message[] messages, int offset, int length) {
+        int count = Math.min(length, size - currSize);
+        if (count <= 0) {
+            return 0;
+        }
+
+        // when empty, start from index 0 (same as push)
+        int writeIdx;
+        if (currSize == 0) {
+            start = 0;
+            writeIdx = 0;
+        } else {
+            writeIdx = (end + 1) % size;
+        }
+
+        // part till the end of the array, then the rest from index 0
+        int firstPart = Math.min(count, size - writeIdx);
+        System.arraycopy(messages, offset, arr, writeIdx, firstPart);
+        System.arraycopy(messages, offset + firstPart, arr, 0, count - firstPart);
+
+        end = (writeIdx + count - 1) % size;
+        currSize += count;
+        return count;
+    }
+
+    // batch pop: copies up to "max" messages into "dest" (starting at index 0)
+    // returns how many messages were popped
+    public int popAll(Message[] dest, int max) {
+        int count = Math.min(max, currSize);
+        if (count <= 0) {
+            return 0;
+        }
+
+        int firstPart = Math.min(count, size - start);
+        System.arraycopy(arr, start, dest, 0, firstPart);
+        System.arraycopy(arr, 0, dest, firstPart, count - firstPart);
+
+        currSize -= count;
+
+        // when all elements are taken
+        if (currSize == 0) {
+            start = -1;
+            end = -1;
+        } else {
+            start = (start + count) % size;
+        }
+
+        return count;
+    }
+
     public Message top() {
         if (currSize == 0) {
             System.out.println("Queue is empty!");
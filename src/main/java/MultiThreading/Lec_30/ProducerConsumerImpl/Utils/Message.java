@@ -1,4 +1,26 @@
 package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
 
-public record Message(String data, int ID) {
+// attempt: how many times the message was already nack-ed (0 = first delivery)
+// enqueuedNanos: System.nanoTime() when it entered the queue, NOT_STAMPED = not recorded (metrics are off or
+// the message wasn't sampled; any long can be a nanoTime(), 0 too, MIN_VALUE is just the least likely one)
+public record Message(String data, long ID, int attempt, long enqueuedNanos) {
+
+    public static final long NOT_STAMPED = Long.MIN_VALUE;
+
+    public Message(String data, long ID) {
+        this(data, ID, 0, NOT_STAMPED);
+    }
+
+    public boolean isStamped() {
+        return enqueuedNanos != NOT_STAMPED;
+    }
+
+    // same message (same ID), delivered once more
+    public Message nextAttempt() {
+        return new Message(data, ID, attempt + 1, NOT_STAMPED);
+    }
+
+    public Message withEnqueuedNanos(long enqueuedNanos) {
+        return new Message(data, ID, attempt, enqueuedNanos);
+    }
 }
@@ -0,0 +1,91 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Unique, time ordered 64-bit message IDs (Snowflake style)
+//
+//   | 1 bit: 0 | 41 bits: millis since EPOCH | 10 bits: node ID | 12 bits: sequence |
+//
+// - sorting IDs = sorting by the millisecond they were created in
+// - different nodes (processes / hosts) never collide, as long as every node has its own node ID
+//
+// Striped blocks: instead of one CAS on a shared counter per ID, a thread reserves a block of
+// BLOCK_SIZE IDs (one CAS), then hands them out from its own ThreadLocal block without any contention.
+// A block is only used within the millisecond it was reserved in, so IDs keep the time of publishing.
+// When more than 4096 IDs are needed in one millisecond, the sequence overflows into the next
+// millisecond (IDs run slightly ahead of the clock instead of colliding).
+public class MessageIdGenerator {
+
+    public static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int BLOCK_SIZE = 32;
+
+    // shared by all SharedQueue instances of this JVM, node ID from "-DmessageId.node=<0..1023>"
+    public static final MessageIdGenerator DEFAULT = new MessageIdGenerator(Integer.getInteger("messageId.node", 0));
+
+    private final long nodeId;
+
+    // last reserved "timestamp + sequence" (without node bits, so sequence overflow goes into the timestamp)
+    private final AtomicLong reserved = new AtomicLong();
+
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    public MessageIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public long nextId() {
+        Block block = blocks.get();
+        long now = System.currentTimeMillis() - EPOCH;
+
+        // block used up, or reserved in an older millisecond
+        if (block.next == block.end || block.millis != now) {
+            reserve(block, now);
+        }
+
+        long counter = block.next++;
+        long millis = counter >>> SEQUENCE_BITS;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (counter & SEQUENCE_MASK);
+    }
+
+    private void reserve(Block block, long now) {
+        long start;
+        long current;
+
+        do {
+            current = reserved.get();
+            // never go back: neither behind the last reserved block, nor behind the clock
+            start = Math.max(current, now << SEQUENCE_BITS);
+        } while (!reserved.compareAndSet(current, start + BLOCK_SIZE));
+
+        block.next = start;
+        block.end = start + BLOCK_SIZE;
+        block.millis = now;
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    public static int sequenceOf(long id) {
+        return (int) (id & SEQUENCE_MASK);
+    }
+
+    // per thread state, mutated in place (no allocation after the first ID of a thread)
+    private static final class Block {
+        long next;
+        long end;
+        long millis = -1;
+    }
+}
@@ -0,0 +1,80 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
+
+// Mutable, reusable version of Message (used by SlotRingBuffer)
+//
+// The slots are created once, when the ring is created. Producers copy their payload into the slot's
+// char[] and consumers read it in place, so publishing / consuming doesn't create any new object.
+// Note: valid only till the consumer releases the slot, copy (toMessage()) if it has to be kept.
+public class MessageSlot implements CharSequence {
+    private final char[] data;
+    private int length;
+    private long ID;
+    private int attempt; // see Message.attempt()
+    private long enqueuedNanos = Message.NOT_STAMPED; // see Message.enqueuedNanos()
+
+    public MessageSlot(int capacity) {
+        this.data = new char[capacity];
+    }
+
+    public void set(CharSequence src, long ID) {
+        set(src, ID, 0, Message.NOT_STAMPED);
+    }
+
+    public void set(CharSequence src, long ID, int attempt, long enqueuedNanos) {
+        if (src.length() > data.length) {
+            throw new IllegalArgumentException("payload of " + src.length() + " chars doesn't fit in slot of " + data.length);
+        }
+
+        for (int i = 0; i < src.length(); i++) {
+            data[i] = src.charAt(i);
+        }
+        this.length = src.length();
+        this.ID = ID;
+        this.attempt = attempt;
+        this.enqueuedNanos = enqueuedNanos;
+    }
+
+    public long ID() {
+        return ID;
+    }
+
+    public int attempt() {
+        return attempt;
+    }
+
+    public long enqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return data[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    // allocates! only for callers which need to keep the message after the slot is released
+    public Message toMessage() {
+        return new Message(toString(), ID, attempt, enqueuedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return new String(data, 0, length);
+    }
+}
@@ -0,0 +1,47 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
+
+// Lock-free, bounded, multi-producer / multi-consumer queue (Dmitry Vyukov's MPMC design)
+//
+// How it differs from FixedSizeQueue:
+// - capacity is rounded up to a power of two, so "idx % size" becomes "seq & mask"
+// - every slot has its own sequence number which tells if the slot is free (for the producer of this round)
+//   or filled (for the consumer of this round), so no shared "currSize" field is needed
+// - producers only CAS "tail", consumers only CAS "head", nobody takes a lock
+// - head & tail are padded onto separate cache lines, so producers and consumers don't invalidate
+//   each other's line on every CAS (false sharing), see RingBufferPadding
+public class RingBuffer<E> extends RingBufferCursors {
+
+    private final Object[] buffer;
+
+    public RingBuffer(int size) {
+        super(size);
+        this.buffer = new Object[capacity];
+    }
+
+    // returns false when the queue is full (never blocks)
+    public boolean offer(E element) {
+        long pos = claimTail();
+        if (pos < 0) {
+            return false;
+        }
+
+        buffer[(int) (pos & mask)] = element;
+        published(pos);
+        return true;
+    }
+
+    // returns null when the queue is empty (never blocks)
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = claimHead();
+        if (pos < 0) {
+            return null;
+        }
+
+        int idx = (int) (pos & mask);
+        E element = (E) buffer[idx];
+        buffer[idx] = null; // help GC
+        consumed(pos);
+        return element;
+    }
+}
@@ -0,0 +1,117 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// What RingBuffer and SlotRingBuffer share (Dmitry Vyukov's MPMC design): power-of-two capacity, one sequence
+// number per slot and the padded head / tail
+//   claimTail(): position a producer may write, claimHead(): position a consumer may read (-1 = full / empty)
+// after the claim the slot belongs to the claiming thread till it stores the next sequence of that slot
+abstract class RingBufferCursors extends RingBufferPadding.Pad2 {
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(RingBufferPadding.Head.class, "head", long.class);
+            TAIL = lookup.findVarHandle(RingBufferPadding.Tail.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final int capacity;
+    final int mask;
+    final AtomicLongArray sequences;
+
+    RingBufferCursors(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+
+        this.capacity = nextPowerOfTwo(size);
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+
+        // slot i is free for the producer which claims position i
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    final long claimTail() {
+        long pos = tail;
+
+        while (true) {
+            long diff = sequences.get((int) (pos & mask)) - pos;
+
+            if (diff == 0) {
+                // slot is free for this round, try to claim the position
+                if (TAIL.compareAndSet(this, pos, pos + 1)) {
+                    return pos;
+                }
+                pos = tail; // lost the race to another producer
+            } else if (diff < 0) {
+                // slot still holds the element of the previous round, i.e. queue is full
+                return -1;
+            } else {
+                pos = tail; // another producer moved ahead, re-read
+            }
+        }
+    }
+
+    final long claimHead() {
+        long pos = head;
+
+        while (true) {
+            long diff = sequences.get((int) (pos & mask)) - (pos + 1);
+
+            if (diff == 0) {
+                // slot is filled for this round, try to claim the position
+                if (HEAD.compareAndSet(this, pos, pos + 1)) {
+                    return pos;
+                }
+                pos = head; // lost the race to another consumer
+            } else if (diff < 0) {
+                // producer of this round has not written yet, i.e. queue is empty
+                return -1;
+            } else {
+                pos = head; // another consumer moved ahead, re-read
+            }
+        }
+    }
+
+    // release store: the consumer reading this sequence also sees what was written into the slot
+    final void published(long pos) {
+        sequences.lazySet((int) (pos & mask), pos + 1);
+    }
+
+    // marks the slot free for the producer of the next round
+    final void consumed(long pos) {
+        sequences.lazySet((int) (pos & mask), pos + capacity);
+    }
+
+    // only an estimate while producers / consumers are running
+    public int size() {
+        long h = head;
+        long t = tail;
+        long size = t - h;
+
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    static int nextPowerOfTwo(int size) {
+        int highest = Integer.highestOneBit(size);
+        return highest == size ? size : highest << 1;
+    }
+}
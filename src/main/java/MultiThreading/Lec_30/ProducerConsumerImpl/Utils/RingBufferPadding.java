@@ -0,0 +1,32 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
+
+// head & tail of the ring buffers, padded onto separate cache lines
+//
+// padding: 8 longs (64 bytes) on each side keep every counter on its own cache line
+// Note: JVM lays out super class fields before sub class fields, so the order below is kept in memory
+// (fields of one object, a GC moving the object can't separate them)
+final class RingBufferPadding {
+
+    private RingBufferPadding() {
+    }
+
+    abstract static class Pad0 {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    abstract static class Head extends Pad0 {
+        protected volatile long head; // next position to consume
+    }
+
+    abstract static class Pad1 extends Head {
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    abstract static class Tail extends Pad1 {
+        protected volatile long tail; // next position to publish
+    }
+
+    abstract static class Pad2 extends Tail {
+        long p20, p21, p22, p23, p24, p25, p26, p27;
+    }
+}
@@ -0,0 +1,7 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
+
+// called by the consumer thread with the slot it claimed, the slot is released once this returns
+@FunctionalInterface
+public interface SlotHandler {
+    void onMessage(MessageSlot slot);
+}
@@ -0,0 +1,46 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.Utils;
+
+// Same algorithm as RingBuffer, but the elements (MessageSlot) are created upfront and never replaced
+//
+// Because producers / consumers work on the slot itself (not on a reference they hand over), the
+// single offer() / poll() step is split in 2:
+//   producer: pos = tryClaim()     -> write into slot(pos) -> publish(pos)
+//   consumer: pos = tryClaimRead() -> read from slot(pos)  -> release(pos)
+// between claim and publish / release the slot belongs only to the claiming thread.
+public class SlotRingBuffer extends RingBufferCursors {
+
+    private final MessageSlot[] slots;
+
+    public SlotRingBuffer(int size, int slotCapacity) {
+        super(size);
+        this.slots = new MessageSlot[capacity];
+
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new MessageSlot(slotCapacity);
+        }
+    }
+
+    // returns the claimed position, or -1 when the ring is full
+    public long tryClaim() {
+        return claimTail();
+    }
+
+    // makes the written slot visible to consumers
+    public void publish(long pos) {
+        published(pos);
+    }
+
+    // returns the claimed position, or -1 when the ring is empty
+    public long tryClaimRead() {
+        return claimHead();
+    }
+
+    // hands the slot back to producers (of the next round)
+    public void release(long pos) {
+        consumed(pos);
+    }
+
+    public MessageSlot slot(long pos) {
+        return slots[(int) (pos & mask)];
+    }
+}
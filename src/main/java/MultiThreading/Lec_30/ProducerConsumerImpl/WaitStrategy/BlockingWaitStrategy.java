@@ -0,0 +1,55 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+public class BlockingWaitStrategy implements WaitStrategy {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // so that signalAll() doesn't take the lock when nobody is waiting (the common case)
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    @Override
+    public void waitFor(BooleanSupplier ready) throws InterruptedException {
+        if (ready.getAsBoolean()) {
+            return;
+        }
+
+        // register first, then re-check "ready": either the other side sees waiters > 0 and signals,
+        // or we see its change here (both are volatile), so no wake-up is lost
+        waiters.incrementAndGet();
+        lock.lock();
+
+        try {
+            while (!ready.getAsBoolean()) {
+                changed.await(); // releases the lock
+            }
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void signalAll() {
+        // the queue change before this call may be a release (lazy) store, it must not be re-ordered
+        // after the read of "waiters", otherwise both sides miss each other
+        VarHandle.fullFence();
+
+        if (waiters.get() == 0) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy;
+
+import java.util.function.BooleanSupplier;
+
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void waitFor(BooleanSupplier ready) {
+        while (!ready.getAsBoolean()) {
+            Thread.onSpinWait(); // hint to the CPU (e.g. PAUSE instruction on x86), thread keeps running
+        }
+    }
+}
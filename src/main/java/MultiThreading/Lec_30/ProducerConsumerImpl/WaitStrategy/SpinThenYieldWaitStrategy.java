@@ -0,0 +1,30 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy;
+
+import java.util.function.BooleanSupplier;
+
+public class SpinThenYieldWaitStrategy implements WaitStrategy {
+
+    private final int spinLimit;
+
+    public SpinThenYieldWaitStrategy() {
+        this(100);
+    }
+
+    public SpinThenYieldWaitStrategy(int spinLimit) {
+        this.spinLimit = spinLimit;
+    }
+
+    @Override
+    public void waitFor(BooleanSupplier ready) {
+        int spins = 0;
+
+        while (!ready.getAsBoolean()) {
+            if (spins < spinLimit) {
+                Thread.onSpinWait();
+                spins++;
+            } else {
+                Thread.yield(); // let other threads (e.g. the producer we wait for) run
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+public class TimedParkWaitStrategy implements WaitStrategy {
+
+    private final long parkNanos;
+
+    public TimedParkWaitStrategy() {
+        this(50, TimeUnit.MICROSECONDS);
+    }
+
+    public TimedParkWaitStrategy(long time, TimeUnit unit) {
+        this.parkNanos = unit.toNanos(time);
+    }
+
+    @Override
+    public void waitFor(BooleanSupplier ready) throws InterruptedException {
+        while (!ready.getAsBoolean()) {
+            // parkNanos() returns right away while the interrupt flag is set: without this check the "timed
+            // park" would turn into a busy spin (interrupted() clears the flag)
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            // nobody un-parks us, the thread simply re-checks after "parkNanos"
+            // (OS timer resolution decides the real sleep time, usually >= 50 micro secs)
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+}
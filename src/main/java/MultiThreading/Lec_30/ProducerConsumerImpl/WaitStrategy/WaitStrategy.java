@@ -0,0 +1,20 @@
+package MultiThreading.Lec_30.ProducerConsumerImpl.WaitStrategy;
+
+import java.util.function.BooleanSupplier;
+
+// What a producer (queue is full) or a consumer (queue is empty) does while it waits
+//
+// Trade-off: the less CPU a strategy burns, the longer it takes to notice the hand-off
+//  - BusySpin       : lowest latency, burns a full core per waiting thread
+//  - SpinThenYield  : spins shortly, then gives the CPU to other threads
+//  - TimedPark      : sleeps for a fixed time between checks
+//  - Blocking       : sleeps on a Condition till the other side signals, lowest CPU, highest latency
+public interface WaitStrategy {
+
+    // returns once "ready" is true (it may be checked many times)
+    void waitFor(BooleanSupplier ready) throws InterruptedException;
+
+    // called by the other side after it changed the queue (only blocking strategies need it)
+    default void signalAll() {
+    }
+}
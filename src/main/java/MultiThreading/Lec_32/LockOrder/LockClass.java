@@ -0,0 +1,30 @@
+package MultiThreading.Lec_32.LockOrder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// A group of locks which are ordered the same way (e.g. every "account" lock, or one "orders" lock): the
+// lock-order graph has one node per class, not per lock instance, so an order seen on 2 accounts also
+// covers the other accounts
+//
+// Nesting 2 locks of the same class isn't checked (it needs an order between the instances, e.g. by key as in
+// StripedLocks.lockAll())
+public final class LockClass {
+
+    final String name;
+
+    // edges of the graph: classes acquired while holding this one (first time seen)
+    final ConcurrentHashMap<LockClass, LockOrderViolation.Edge> after = new ConcurrentHashMap<>();
+
+    LockClass(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
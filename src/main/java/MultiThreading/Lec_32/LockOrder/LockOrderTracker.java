@@ -0,0 +1,205 @@
+package MultiThreading.Lec_32.LockOrder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Opt-in lock-order checker (like the Linux kernel's lockdep): records "held A while acquiring B" per LockClass
+// and reports a cycle in that graph the first time an acquisition closes it. A cycle is a deadlock waiting for
+// the right interleaving, it's reported even if this run never hit that interleaving.
+//
+// - checked before a blocking acquisition: a real deadlock is reported before the thread blocks in it
+// - tryLock() can't block, it adds no edges (the lock still counts as held for later acquisitions)
+// - disabled (the default, -DlockOrder.enabled=true enables DEFAULT): a final field read, then the plain lock
+// - enabled, known order: a ThreadLocal lookup and one map lookup per held lock
+// - enabled, new order: stack capture + graph search under one lock, once per edge for the whole JVM
+//
+// Violations go to "onViolation" in the acquiring thread (DEFAULT prints them), a handler which throws stops
+// the acquisition (nothing is held yet).
+public final class LockOrderTracker {
+
+    public static final LockOrderTracker DEFAULT =
+            new LockOrderTracker(Boolean.getBoolean("lockOrder.enabled"), v -> System.err.println(v));
+
+    private static final int MAX_STACK_DEPTH = 32;
+    private static final Held NOT_TRACKED = () -> {
+    };
+
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    final boolean enabled;
+    private final Consumer<LockOrderViolation> onViolation;
+
+    private final ConcurrentHashMap<String, LockClass> classes = new ConcurrentHashMap<>();
+    private final Object graphLock = new Object(); // edges are only added under it
+    private final ThreadLocal<HeldLocks> held = ThreadLocal.withInitial(HeldLocks::new);
+
+    private final LongAdder edges = new LongAdder();
+    private final LongAdder violations = new LongAdder();
+
+    public LockOrderTracker(boolean enabled, Consumer<LockOrderViolation> onViolation) {
+        this.enabled = enabled;
+        this.onViolation = onViolation;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LockClass lockClass(String name) {
+        return classes.computeIfAbsent(name, LockClass::new);
+    }
+
+    // for synchronized blocks: tracker.synchronizedOn(ACCOUNT, account, () -> { ... })
+    public void synchronizedOn(LockClass lockClass, Object monitor, Runnable action) {
+        Held held = enter(lockClass, monitor);
+        try {
+            synchronized (monitor) {
+                action.run();
+            }
+        } finally {
+            held.close();
+        }
+    }
+
+    // synchronizedOn() for bodies which can't be a Runnable (checked exceptions, return values), taken before
+    // the monitor; "held" isn't used in the body, so the method needs @SuppressWarnings("try"):
+    //   try (LockOrderTracker.Held held = tracker.enter(ACCOUNT, account)) { synchronized (account) { ... } }
+    public Held enter(LockClass lockClass, Object monitor) {
+        if (!enabled || Thread.holdsLock(monitor)) {
+            return NOT_TRACKED; // re-entering a monitor can't block
+        }
+
+        beforeAcquire(lockClass);
+        acquired(lockClass, monitor);
+        return () -> released(monitor);
+    }
+
+    // ----- called by the Tracked* locks (and enter()) -----
+
+    void beforeAcquire(LockClass acquiring) {
+        HeldLocks locks = held.get();
+        for (int i = 0; i < locks.size; i++) {
+            LockClass before = locks.classes[i];
+            if (before != acquiring && !before.after.containsKey(acquiring)) {
+                addEdge(before, acquiring);
+            }
+        }
+    }
+
+    void acquired(LockClass lockClass, Object lock) {
+        held.get().push(lockClass, lock);
+    }
+
+    void released(Object lock) {
+        held.get().remove(lock);
+    }
+
+    private void addEdge(LockClass from, LockClass to) {
+        LockOrderViolation.Edge edge = new LockOrderViolation.Edge(from, to, Thread.currentThread().getName(), stack());
+        List<LockOrderViolation.Edge> cycle;
+
+        synchronized (graphLock) {
+            if (from.after.containsKey(to)) {
+                return; // another thread added it meanwhile
+            }
+            cycle = path(to, from);
+            from.after.put(to, edge); // kept even when it closes a cycle: reported once, then free
+            edges.increment();
+        }
+
+        if (cycle != null) {
+            violations.increment();
+            onViolation.accept(new LockOrderViolation(edge, cycle));
+        }
+    }
+
+    // edges from "start" to "target" (breadth-first, so the shortest cycle is reported), null = no path
+    private static List<LockOrderViolation.Edge> path(LockClass start, LockClass target) {
+        Map<LockClass, LockOrderViolation.Edge> reachedBy = new HashMap<>();
+        ArrayDeque<LockClass> queue = new ArrayDeque<>();
+        queue.add(start);
+        reachedBy.put(start, null);
+
+        while (!queue.isEmpty()) {
+            LockClass current = queue.poll();
+            if (current == target) {
+                List<LockOrderViolation.Edge> path = new ArrayList<>();
+                for (LockOrderViolation.Edge e = reachedBy.get(current); e != null; e = reachedBy.get(e.held())) {
+                    path.add(e);
+                }
+                Collections.reverse(path);
+                return path;
+            }
+
+            for (LockOrderViolation.Edge e : current.after.values()) {
+                if (!reachedBy.containsKey(e.acquired())) {
+                    reachedBy.put(e.acquired(), e);
+                    queue.add(e.acquired());
+                }
+            }
+        }
+        return null;
+    }
+
+    // stack of the caller, without the tracker's own frames
+    private static StackTraceElement[] stack() {
+        String trackerPackage = LockOrderTracker.class.getPackageName();
+        return StackWalker.getInstance().walk(frames -> frames
+                .dropWhile(frame -> frame.getClassName().equals(LockOrderTracker.class.getName())
+                        || frame.getClassName().startsWith(trackerPackage + ".Tracked"))
+                .limit(MAX_STACK_DEPTH)
+                .map(StackWalker.StackFrame::toStackTraceElement)
+                .toArray(StackTraceElement[]::new));
+    }
+
+    public long getEdges() {
+        return edges.sum();
+    }
+
+    public long getViolations() {
+        return violations.sum();
+    }
+
+    // locks held by one thread, in acquisition order (usually 0-3, so arrays + linear search)
+    private static final class HeldLocks {
+        LockClass[] classes = new LockClass[8];
+        Object[] locks = new Object[8];
+        int size;
+
+        void push(LockClass lockClass, Object lock) {
+            if (size == classes.length) {
+                classes = Arrays.copyOf(classes, size * 2);
+                locks = Arrays.copyOf(locks, size * 2);
+            }
+            classes[size] = lockClass;
+            locks[size] = lock;
+            size++;
+        }
+
+        // usually the last one, but locks may be released in any order
+        void remove(Object lock) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (locks[i] == lock) {
+                    System.arraycopy(classes, i + 1, classes, i, size - i - 1);
+                    System.arraycopy(locks, i + 1, locks, i, size - i - 1);
+                    size--;
+                    classes[size] = null;
+                    locks[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
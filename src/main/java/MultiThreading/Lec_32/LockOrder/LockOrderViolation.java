@@ -0,0 +1,42 @@
+package MultiThreading.Lec_32.LockOrder;
+
+import java.util.List;
+
+// A cycle in the lock-order graph: "acquiring" is the edge just taken, "conflicting" the edges seen before
+// which lead back from its acquired class to its held class (the 2 stacks of a classic A->B / B->A are
+// acquiring.stack and conflicting.get(0).stack)
+public record LockOrderViolation(Edge acquiring, List<Edge> conflicting) {
+
+    private static final int MAX_FRAMES = 8;
+
+    // "held" was held while "acquired" was acquired, first seen in thread "thread" at "stack"
+    public record Edge(LockClass held, LockClass acquired, String thread, StackTraceElement[] stack) {
+    }
+
+    public String cycle() {
+        StringBuilder text = new StringBuilder(acquiring.held().name());
+        text.append(" -> ").append(acquiring.acquired().name());
+        for (Edge edge : conflicting) {
+            text.append(" -> ").append(edge.acquired().name());
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("lock order cycle: ").append(cycle());
+        append(text, acquiring);
+        for (Edge edge : conflicting) {
+            append(text, edge);
+        }
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, Edge edge) {
+        text.append(System.lineSeparator()).append("  ").append(edge.thread()).append(" acquired ")
+                .append(edge.acquired().name()).append(" while holding ").append(edge.held().name()).append(':');
+        for (int i = 0; i < Math.min(MAX_FRAMES, edge.stack().length); i++) {
+            text.append(System.lineSeparator()).append("    at ").append(edge.stack()[i]);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package MultiThreading.Lec_32.LockOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Lock-order cycles found in runs which never deadlock:
+// 1. placeOrder() takes orders -> inventory, restock() inventory -> orders (run one after the other)
+// 2. a 3-lock cycle through a synchronized block: inventory -> cache (monitor) -> orders -> inventory
+// then the cost per nested lock() / unlock() pair: plain, tracker disabled, tracker enabled
+public class Main {
+
+    private static final int BENCHMARK_OPS = 5_000_000;
+
+    private static final List<LockOrderViolation> violations = new ArrayList<>();
+    private static final LockOrderTracker tracker = new LockOrderTracker(true, violations::add);
+
+    private static final ReentrantLock orders = new TrackedReentrantLock(tracker, "orders");
+    private static final ReentrantLock inventory = new TrackedReentrantLock(tracker, "inventory");
+    private static final ReentrantLock payments = new TrackedReentrantLock(tracker, "payments");
+    private static final LockClass CACHE = tracker.lockClass("cache");
+    private static final Object cache = new Object();
+
+    private static int stock;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        // 1. no deadlock in this run: the two orders never overlap in time
+        Thread customer = new Thread(Main::placeOrder, "customer");
+        customer.start();
+        customer.join();
+        Thread warehouse = new Thread(Main::restock, "warehouse");
+        warehouse.start();
+        warehouse.join();
+
+        // consistent orders add edges, no violation
+        placeOrder();
+        pay();
+        pay();
+
+        // 2.
+        refreshCache();
+        placeOrderFromCache();
+
+        System.out.println("edges: " + tracker.getEdges() + ", violations: " + tracker.getViolations());
+        for (LockOrderViolation violation : violations) {
+            System.out.println(violation);
+        }
+
+        benchmark();
+
+        System.out.println("Main method ends...");
+    }
+
+    private static void placeOrder() {
+        orders.lock();
+        try {
+            inventory.lock();
+            try {
+                stock--;
+            } finally {
+                inventory.unlock();
+            }
+        } finally {
+            orders.unlock();
+        }
+    }
+
+    private static void restock() {
+        inventory.lock();
+        try {
+            orders.lock(); // inventory -> orders: the reverse of placeOrder()
+            try {
+                stock++;
+            } finally {
+                orders.unlock();
+            }
+        } finally {
+            inventory.unlock();
+        }
+    }
+
+    private static void pay() {
+        orders.lock();
+        try {
+            payments.lock();
+            try {
+                stock += 0;
+            } finally {
+                payments.unlock();
+            }
+        } finally {
+            orders.unlock();
+        }
+    }
+
+    private static void refreshCache() {
+        inventory.lock();
+        try {
+            tracker.synchronizedOn(CACHE, cache, () -> stock += 0);
+        } finally {
+            inventory.unlock();
+        }
+    }
+
+    private static void placeOrderFromCache() {
+        tracker.synchronizedOn(CACHE, cache, Main::placeOrder); // cache -> orders -> inventory, closes inventory -> cache
+    }
+
+    private static void benchmark() {
+        LockOrderTracker disabled = new LockOrderTracker(false, violations::add);
+        ReentrantLock[] plain = {new ReentrantLock(), new ReentrantLock()};
+        ReentrantLock[] off = {new TrackedReentrantLock(disabled, "a"), new TrackedReentrantLock(disabled, "b")};
+        ReentrantLock[] on = {new TrackedReentrantLock(tracker, "a"), new TrackedReentrantLock(tracker, "b")};
+
+        for (int round = 0; round < 3; round++) { // first rounds are JIT warm-up
+            System.out.printf("nested lock/unlock of 2 locks (ns/op): plain %.1f, tracker disabled %.1f, enabled %.1f%n",
+                    (double) time(plain) / BENCHMARK_OPS, (double) time(off) / BENCHMARK_OPS,
+                    (double) time(on) / BENCHMARK_OPS);
+        }
+    }
+
+    private static long time(ReentrantLock[] locks) {
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_OPS; i++) {
+            locks[0].lock();
+            try {
+                locks[1].lock();
+                try {
+                    stock++;
+                } finally {
+                    locks[1].unlock();
+                }
+            } finally {
+                locks[0].unlock();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,90 @@
+package MultiThreading.Lec_32.LockOrder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Drop-in ReentrantLock which reports its acquisitions to a LockOrderTracker (LockOrderTracker.DEFAULT unless
+// given), locks created with the same class name share one node of the lock-order graph
+//
+// re-entering a lock the thread already holds isn't an acquisition (it can't block)
+public class TrackedReentrantLock extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient LockOrderTracker tracker;
+    private final transient LockClass lockClass;
+
+    public TrackedReentrantLock(String className) {
+        this(LockOrderTracker.DEFAULT, className, false);
+    }
+
+    public TrackedReentrantLock(LockOrderTracker tracker, String className) {
+        this(tracker, className, false);
+    }
+
+    public TrackedReentrantLock(LockOrderTracker tracker, String className, boolean fair) {
+        super(fair);
+        this.tracker = tracker;
+        this.lockClass = tracker.lockClass(className);
+    }
+
+    @Override
+    public void lock() {
+        if (!tracker.enabled || isHeldByCurrentThread()) {
+            super.lock();
+            return;
+        }
+
+        tracker.beforeAcquire(lockClass);
+        super.lock();
+        tracker.acquired(lockClass, this);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (!tracker.enabled || isHeldByCurrentThread()) {
+            super.lockInterruptibly();
+            return;
+        }
+
+        tracker.beforeAcquire(lockClass);
+        super.lockInterruptibly();
+        tracker.acquired(lockClass, this);
+    }
+
+    @Override
+    public boolean tryLock() {
+        boolean reentry = isHeldByCurrentThread();
+        boolean acquired = super.tryLock();
+
+        if (acquired && !reentry && tracker.enabled) {
+            tracker.acquired(lockClass, this);
+        }
+        return acquired;
+    }
+
+    // may wait, so it's checked like lock() (a timeout turns a deadlock into a stall + retry, still a bug)
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!tracker.enabled || isHeldByCurrentThread()) {
+            return super.tryLock(timeout, unit);
+        }
+
+        tracker.beforeAcquire(lockClass);
+        boolean acquired = super.tryLock(timeout, unit);
+        if (acquired) {
+            tracker.acquired(lockClass, this);
+        }
+        return acquired;
+    }
+
+    @Override
+    public void unlock() {
+        boolean outermost = getHoldCount() == 1;
+        super.unlock();
+
+        if (outermost && tracker.enabled) {
+            tracker.released(this);
+        }
+    }
+}
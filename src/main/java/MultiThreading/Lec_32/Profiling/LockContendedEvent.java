@@ -0,0 +1,26 @@
+package MultiThreading.Lec_32.Profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event for every contended acquisition of a profiled lock, the event's duration is the wait
+// (JFR records the stack trace, so JMC shows the waiting call sites without sampling)
+@Name("MultiThreading.LockContended")
+@Label("Lock Contended")
+@Category({"MultiThreading", "Locks"})
+@Description("A profiled lock was not free and the thread had to wait for it")
+@StackTrace(true)
+class LockContendedEvent extends jdk.jfr.Event {
+
+    @Label("Lock")
+    String lockName;
+
+    @Label("Lock Type")
+    String lockType;
+
+    @Label("Mode")
+    String mode;
+}
@@ -0,0 +1,25 @@
+package MultiThreading.Lec_32.Profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// JFR event for a sampled hold of a profiled lock (1 of "sampleRate" acquisitions per thread)
+@Name("MultiThreading.LockHold")
+@Label("Lock Hold (sampled)")
+@Category({"MultiThreading", "Locks"})
+@StackTrace(false)
+class LockHoldEvent extends jdk.jfr.Event {
+
+    @Label("Lock")
+    String lockName;
+
+    @Label("Lock Type")
+    String lockType;
+
+    @Label("Hold Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long holdNanos;
+}
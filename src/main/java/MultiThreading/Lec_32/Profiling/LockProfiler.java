@@ -0,0 +1,314 @@
+package MultiThreading.Lec_32.Profiling;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Metrics.LatencyHistogram;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Collects what the Profiled* locks record, snapshot() returns it per lock (hottest first)
+//
+// Cost per acquisition:
+// - disabled: one volatile read, then the plain lock
+// - uncontended: a tryLock() (which the plain lock() does first anyway), a LongAdder increment and a push onto
+//   the thread's hold stack; 1 of "sampleRate" acquisitions per thread also reads the clock for its hold time
+// - contended: the thread is about to park anyway, so the wait is always timed (+ JFR event when recording);
+//   1 of "sampleRate" contended acquisitions per thread also records its call site. The stack walk and the
+//   call site lookup run in beginContended(), before the wait: after it the thread holds the lock, and a few
+//   us more hold time on exactly the contended locks would add to the contention being measured (JFR's
+//   LockContendedEvent has the full stack of every wait anyway)
+//
+// Per-thread buffers: wait / hold times go into the thread's own ThreadBuffer and are flushed into the shared
+// histograms BUFFER_SIZE at a time (or by snapshot()), so hot locks don't add a shared write per sample.
+// A buffer is only touched by its thread, except by snapshot() which drains it under the buffer's monitor.
+//
+// Locks with the same name and type share one LockStats (per-request / per-object locks: give them one name).
+// The registry only holds it weakly, it's dropped with the last lock using it.
+public final class LockProfiler {
+
+    // sample rate from "-DlockProfiler.sampleRate=<power of two>"
+    public static final LockProfiler DEFAULT = new LockProfiler(Integer.getInteger("lockProfiler.sampleRate", 16));
+
+    private static final int BUFFER_SIZE = 256;
+    private static final int MAX_HELD = 16; // locks held at the same time by one thread, deeper ones aren't timed
+    private static final int TOP_CALL_SITES = 5;
+
+    private final int sampleMask;
+    private volatile boolean enabled = true;
+    private volatile int epoch; // +1 per setEnabled(): hold stacks from before are stale (their releases weren't seen)
+
+    private final ConcurrentHashMap<String, StatsReference> locks = new ConcurrentHashMap<>(); // "type:name"
+    private final ReferenceQueue<LockStats> collected = new ReferenceQueue<>();
+    private final Set<ThreadBuffer> buffers = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<ThreadBuffer> buffer = ThreadLocal.withInitial(this::newBuffer);
+
+    public LockProfiler(int sampleRate) {
+        if (sampleRate <= 0 || Integer.bitCount(sampleRate) != 1) {
+            throw new IllegalArgumentException("sampleRate must be a power of two: " + sampleRate);
+        }
+        this.sampleMask = sampleRate - 1;
+    }
+
+    private ThreadBuffer newBuffer() {
+        ThreadBuffer threadBuffer = new ThreadBuffer(Thread.currentThread());
+        buffers.add(threadBuffer);
+        return threadBuffer;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        epoch++; // only one writer is expected (whoever switches profiling), a lost increment only delays a reset
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    LockStats register(String name, String type) {
+        purgeCollected();
+        String key = type + ":" + name;
+
+        while (true) {
+            StatsReference reference = locks.get(key);
+            LockStats stats = reference == null ? null : reference.get();
+            if (stats != null) {
+                return stats;
+            }
+
+            stats = new LockStats(name, type);
+            StatsReference created = new StatsReference(key, stats, collected);
+            if (reference == null ? locks.putIfAbsent(key, created) == null : locks.replace(key, reference, created)) {
+                return stats;
+            }
+        }
+    }
+
+    private void purgeCollected() {
+        for (Reference<? extends LockStats> reference; (reference = collected.poll()) != null; ) {
+            locks.remove(((StatsReference) reference).key, reference);
+        }
+    }
+
+    // ----- called by the Profiled* locks -----
+
+    void acquiredUncontended(LockStats stats) {
+        stats.uncontended.increment();
+        buffer.get().push(stats);
+    }
+
+    // "event" was begun before the wait by beginContended() (null when JFR doesn't record it)
+    void acquiredContended(LockStats stats, long waitStartNanos, LockContendedEvent event, String mode) {
+        long wait = System.nanoTime() - waitStartNanos;
+        stats.contended.increment();
+
+        ThreadBuffer threadBuffer = buffer.get();
+        threadBuffer.add(stats.waitNanos, wait);
+        if (threadBuffer.waitSite != null) {
+            threadBuffer.waitSite.record(wait); // 2 LongAdder updates, the lookup happened before the wait
+            threadBuffer.waitSite = null;
+        }
+        threadBuffer.push(stats);
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.lockName = stats.name;
+                event.lockType = stats.type;
+                event.mode = mode;
+                event.commit();
+            }
+        }
+    }
+
+    void released(LockStats stats) {
+        long hold = buffer.get().pop(stats);
+
+        if (hold > 0) {
+            LockHoldEvent event = new LockHoldEvent();
+            if (event.shouldCommit()) {
+                event.lockName = stats.name;
+                event.lockType = stats.type;
+                event.holdNanos = hold;
+                event.commit();
+            }
+        }
+    }
+
+    // right before a thread waits for "stats": picks the call site of sampled waits (a wait which ends
+    // without the lock, e.g. a timed out tryLock(), leaves it unused, the next beginContended() replaces it)
+    LockContendedEvent beginContended(LockStats stats) {
+        ThreadBuffer threadBuffer = buffer.get();
+        threadBuffer.waitSite = threadBuffer.sampleWait() ? stats.callSite(callSite()) : null;
+
+        LockContendedEvent event = new LockContendedEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    // first frame outside this package
+    private static String callSite() {
+        String profilerPackage = LockProfiler.class.getPackageName() + ".Profiled";
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().startsWith(profilerPackage)
+                        && !frame.getClassName().equals(LockProfiler.class.getName()))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown"));
+    }
+
+    // ----- snapshot -----
+
+    public List<LockSnapshot> snapshot() {
+        for (ThreadBuffer threadBuffer : buffers) {
+            threadBuffer.flush();
+            if (threadBuffer.owner.get() == null || !threadBuffer.owner.get().isAlive()) {
+                buffers.remove(threadBuffer); // flushed for the last time
+            }
+        }
+
+        purgeCollected();
+        List<LockSnapshot> snapshots = new ArrayList<>();
+        for (StatsReference reference : locks.values()) {
+            LockStats stats = reference.get();
+            if (stats != null) {
+                snapshots.add(stats.snapshot(TOP_CALL_SITES));
+            }
+        }
+        snapshots.sort(Comparator.comparingLong((LockSnapshot s) -> s.waitTime().sum()).reversed());
+        return snapshots;
+    }
+
+    // waits / waitNanos: sampled waits only
+    public record CallSite(String site, long waits, long waitNanos) {
+    }
+
+    // waitTime: every contended acquisition, holdTime: sampled acquisitions only
+    public record LockSnapshot(String name, String type, long uncontended, long contended, long optimisticFailures,
+                               LatencyHistogram.Snapshot waitTime, LatencyHistogram.Snapshot holdTime, List<CallSite> topCallSites) {
+
+        public double contendedRatio() {
+            long total = uncontended + contended;
+            return total == 0 ? 0 : (double) contended / total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                    "%s (%s): acquisitions %d, contended %.1f%%, total wait %.1f ms | wait %s | hold %s",
+                    name, type, uncontended + contended, contendedRatio() * 100, waitTime.sum() / 1e6, waitTime, holdTime));
+            if (optimisticFailures > 0) {
+                text.append(" | failed optimistic reads ").append(optimisticFailures);
+            }
+            for (CallSite site : topCallSites) {
+                text.append(String.format(Locale.ROOT, "%n    waiting at %s: %d sampled waits, %.1f ms",
+                        site.site(), site.waits(), site.waitNanos() / 1e6));
+            }
+            return text.toString();
+        }
+    }
+
+    private static final class StatsReference extends WeakReference<LockStats> {
+        final String key;
+
+        StatsReference(String key, LockStats stats, ReferenceQueue<LockStats> queue) {
+            super(stats, queue);
+            this.key = key;
+        }
+    }
+
+    // one per thread: sampling counter, held locks (for hold times), unflushed samples
+    private final class ThreadBuffer {
+        final WeakReference<Thread> owner;
+        int counter;
+        int waitCounter;
+        LockStats.CallSiteStats waitSite; // set by beginContended(), used by the acquiredContended() after it
+
+        final LockStats[] held = new LockStats[MAX_HELD];
+        final long[] heldSince = new long[MAX_HELD]; // 0 = not sampled
+        int depth;
+        int heldEpoch;
+
+        final LatencyHistogram[] targets = new LatencyHistogram[BUFFER_SIZE];
+        final long[] values = new long[BUFFER_SIZE];
+        int size;
+
+        ThreadBuffer(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean sample() {
+            return (++counter & sampleMask) == 0;
+        }
+
+        // own counter: waits are rare next to acquisitions, sharing one would make their sampling erratic
+        boolean sampleWait() {
+            return (++waitCounter & sampleMask) == 0;
+        }
+
+        void push(LockStats stats) {
+            if (heldEpoch != epoch) {
+                heldEpoch = epoch;
+                Arrays.fill(held, null);
+                depth = 0;
+            }
+
+            if (depth < MAX_HELD) {
+                held[depth] = stats;
+                heldSince[depth] = sample() ? System.nanoTime() : 0;
+            }
+            depth++;
+        }
+
+        // hold time of the innermost hold of "stats" (0 when it wasn't sampled)
+        long pop(LockStats stats) {
+            if (depth > MAX_HELD) {
+                depth--; // was never stored
+                return 0;
+            }
+
+            // usually the top, but locks may be released in any order
+            for (int i = depth - 1; i >= 0; i--) {
+                if (held[i] == stats) {
+                    long since = heldSince[i];
+                    System.arraycopy(held, i + 1, held, i, depth - i - 1);
+                    System.arraycopy(heldSince, i + 1, heldSince, i, depth - i - 1);
+                    held[--depth] = null;
+
+                    if (since == 0) {
+                        return 0;
+                    }
+                    long hold = System.nanoTime() - since;
+                    add(stats.holdNanos, hold);
+                    return hold;
+                }
+            }
+            return 0; // locked by another thread or while profiling was off
+        }
+
+        synchronized void add(LatencyHistogram target, long value) {
+            targets[size] = target;
+            values[size] = value;
+            if (++size == BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            for (int i = 0; i < size; i++) {
+                targets[i].record(values[i]);
+                targets[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
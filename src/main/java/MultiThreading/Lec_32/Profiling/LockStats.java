@@ -0,0 +1,57 @@
+package MultiThreading.Lec_32.Profiling;
+
+import MultiThreading.Lec_30.ProducerConsumerImpl.Metrics.LatencyHistogram;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Everything recorded for one profiled lock
+// - counters: every acquisition (LongAdder, no shared cache line between threads)
+// - wait / hold times: flushed in batches from the per-thread buffers of LockProfiler
+// - call sites: sampled contended acquisitions (looked up before the thread waits, see LockProfiler)
+final class LockStats {
+
+    final String name;
+    final String type;
+
+    final LongAdder uncontended = new LongAdder();
+    final LongAdder contended = new LongAdder();
+    final LongAdder optimisticFailures = new LongAdder(); // StampedLock.validate() == false
+
+    final LatencyHistogram waitNanos = new LatencyHistogram();
+    final LatencyHistogram holdNanos = new LatencyHistogram();
+
+    private final ConcurrentHashMap<String, CallSiteStats> callSites = new ConcurrentHashMap<>();
+
+    LockStats(String name, String type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    CallSiteStats callSite(String site) {
+        return callSites.computeIfAbsent(site, s -> new CallSiteStats());
+    }
+
+    LockProfiler.LockSnapshot snapshot(int topCallSites) {
+        List<LockProfiler.CallSite> sites = callSites.entrySet().stream()
+                .map(e -> new LockProfiler.CallSite(e.getKey(), e.getValue().waits.sum(), e.getValue().waitNanos.sum()))
+                .sorted(Comparator.comparingLong(LockProfiler.CallSite::waitNanos).reversed())
+                .limit(topCallSites)
+                .toList();
+
+        return new LockProfiler.LockSnapshot(name, type, uncontended.sum(), contended.sum(), optimisticFailures.sum(),
+                waitNanos.snapshot(), holdNanos.snapshot(), sites);
+    }
+
+    static final class CallSiteStats {
+        final LongAdder waits = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+
+        void record(long nanos) {
+            waits.increment();
+            waitNanos.add(nanos);
+        }
+    }
+}
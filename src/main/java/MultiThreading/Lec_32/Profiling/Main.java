@@ -0,0 +1,234 @@
+package MultiThreading.Lec_32.Profiling;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Profiled locks under a JFR recording:
+// - "orders": hot lock, taken from two call sites (submit holds it long, audit short)
+// - "config": cold lock, rarely contended
+// - "cache":  ProfiledReadWriteLock, mostly reads
+// - "prices": ProfiledStampedLock, optimistic reads failing while a writer is busy
+// then the snapshot (hottest lock first), the JFR events written, and the uncontended cost of the wrapper
+public class Main {
+
+    private static final int THREADS = 4;
+    private static final int ITERATIONS = 20_000;
+    private static final int BENCHMARK_OPS = 5_000_000;
+
+    private static final ReentrantLock orders = new ProfiledReentrantLock("orders");
+    private static final ReentrantLock config = new ProfiledReentrantLock("config");
+    private static final ProfiledReadWriteLock cache = new ProfiledReadWriteLock("cache");
+    private static final ProfiledStampedLock prices = new ProfiledStampedLock("prices");
+
+    private static long ordersTotal;
+    private static long configVersion;
+    private static long cacheValue;
+    private static long price;
+
+    public static void main(String[] args) throws Exception {
+
+        System.out.println("Main method starts...");
+
+        Path file = Files.createTempFile("lock-profile", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(LockContendedEvent.class).withThreshold(Duration.ZERO).withStackTrace();
+            recording.enable(LockHoldEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            runWorkload();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        for (LockProfiler.LockSnapshot snapshot : LockProfiler.DEFAULT.snapshot()) {
+            System.out.println(snapshot);
+        }
+        printEvents(file);
+        Files.deleteIfExists(file);
+
+        benchmark();
+
+        System.out.println("Main method ends...");
+    }
+
+    private static void runWorkload() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread(Main::work, "worker-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void work() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (i % 4 == 0) {
+                submit();
+            } else {
+                audit();
+            }
+            if (i % 1000 == 0) {
+                reloadConfig();
+            }
+            readCache(i);
+            readPrice(i);
+        }
+    }
+
+    private static void submit() {
+        orders.lock();
+        try {
+            busyWork(5_000);
+            ordersTotal++;
+        } finally {
+            orders.unlock();
+        }
+    }
+
+    private static void audit() {
+        orders.lock();
+        try {
+            busyWork(200);
+        } finally {
+            orders.unlock();
+        }
+    }
+
+    private static void reloadConfig() {
+        config.lock();
+        try {
+            configVersion++;
+        } finally {
+            config.unlock();
+        }
+    }
+
+    private static void readCache(int i) {
+        Lock lock = i % 50 == 0 ? cache.writeLock() : cache.readLock();
+        lock.lock();
+        try {
+            if (i % 50 == 0) {
+                cacheValue = i;
+            }
+            busyWork(100);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void readPrice(int i) {
+        if (i % 100 == 0) {
+            long stamp = prices.writeLock();
+            try {
+                price++;
+                busyWork(2_000);
+            } finally {
+                prices.unlockWrite(stamp);
+            }
+            return;
+        }
+
+        long stamp = prices.tryOptimisticRead();
+        long seen = price;
+        if (!prices.validate(stamp)) {
+            stamp = prices.readLock();
+            try {
+                seen = price;
+            } finally {
+                prices.unlockRead(stamp);
+            }
+        }
+        cacheValue += seen & 1;
+    }
+
+    // spins instead of sleeping, a sleeping holder would make every wait a scheduler artefact
+    private static void busyWork(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void printEvents(Path file) throws IOException {
+        long contended = 0;
+        long holds = 0;
+        RecordedEvent example = null;
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            if (name.equals("MultiThreading.LockContended")) {
+                contended++;
+                if (example == null && event.getStackTrace() != null) {
+                    example = event;
+                }
+            } else if (name.equals("MultiThreading.LockHold")) {
+                holds++;
+            }
+        }
+
+        System.out.printf("JFR: %,d LockContended events, %,d LockHold events%n", contended, holds);
+        if (example != null) {
+            System.out.printf("  e.g. %s (%s) waited %,d us in %s%n", example.getString("lockName"),
+                    example.getString("mode"), example.getDuration().toNanos() / 1000,
+                    callSite(example));
+        }
+    }
+
+    // stack of the event starts inside the profiler, the waiting code is the first frame outside of it
+    private static String callSite(RecordedEvent event) {
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith(LockProfiler.class.getPackageName() + ".Profiled") && !type.equals(LockProfiler.class.getName())) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+
+    // one thread, never contended: what the wrapper adds to every lock() / unlock()
+    private static void benchmark() {
+        ReentrantLock plain = new ReentrantLock();
+        ReentrantLock profiled = new ProfiledReentrantLock("benchmark");
+
+        for (int round = 0; round < 3; round++) { // first rounds are JIT warm-up
+            long plainNanos = time(plain);
+            long profiledNanos = time(profiled);
+            LockProfiler.DEFAULT.setEnabled(false);
+            long disabledNanos = time(profiled);
+            LockProfiler.DEFAULT.setEnabled(true);
+
+            System.out.printf("uncontended lock/unlock (ns/op): plain %.1f, profiled %.1f, profiling disabled %.1f%n",
+                    (double) plainNanos / BENCHMARK_OPS, (double) profiledNanos / BENCHMARK_OPS,
+                    (double) disabledNanos / BENCHMARK_OPS);
+        }
+    }
+
+    private static long time(ReentrantLock lock) {
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_OPS; i++) {
+            lock.lock();
+            try {
+                ordersTotal++;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,90 @@
+package MultiThreading.Lec_32.Profiling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+// Profiling Lock view around another Lock (read / write lock of ProfiledReadWriteLock and ProfiledStampedLock)
+// every acquisition counts, re-entrant ones too (the views can't tell)
+final class ProfiledLock implements Lock {
+
+    private static final LockProfiler PROFILER = LockProfiler.DEFAULT;
+    private final Lock delegate;
+    private final LockStats stats;
+    private final String mode;
+
+    ProfiledLock(Lock delegate, LockStats stats, String mode) {
+        this.delegate = delegate;
+        this.stats = stats;
+        this.mode = mode;
+    }
+
+    @Override
+    public void lock() {
+        if (!PROFILER.isEnabled()) {
+            delegate.lock();
+        } else if (delegate.tryLock()) {
+            PROFILER.acquiredUncontended(stats);
+        } else {
+            LockContendedEvent event = PROFILER.beginContended(stats);
+            long start = System.nanoTime();
+            delegate.lock();
+            PROFILER.acquiredContended(stats, start, event, mode);
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (!PROFILER.isEnabled()) {
+            delegate.lockInterruptibly();
+        } else if (delegate.tryLock()) {
+            PROFILER.acquiredUncontended(stats);
+        } else {
+            LockContendedEvent event = PROFILER.beginContended(stats);
+            long start = System.nanoTime();
+            delegate.lockInterruptibly();
+            PROFILER.acquiredContended(stats, start, event, mode);
+        }
+    }
+
+    @Override
+    public boolean tryLock() {
+        boolean acquired = delegate.tryLock();
+        if (acquired && PROFILER.isEnabled()) {
+            PROFILER.acquiredUncontended(stats);
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (!PROFILER.isEnabled()) {
+            return delegate.tryLock(time, unit);
+        }
+        if (delegate.tryLock()) {
+            PROFILER.acquiredUncontended(stats);
+            return true;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        boolean acquired = delegate.tryLock(time, unit);
+        if (acquired) {
+            PROFILER.acquiredContended(stats, start, event, mode);
+        }
+        return acquired;
+    }
+
+    @Override
+    public void unlock() {
+        delegate.unlock();
+        if (PROFILER.isEnabled()) {
+            PROFILER.released(stats);
+        }
+    }
+
+    @Override
+    public Condition newCondition() {
+        return delegate.newCondition();
+    }
+}
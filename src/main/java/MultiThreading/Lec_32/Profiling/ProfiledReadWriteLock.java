@@ -0,0 +1,36 @@
+package MultiThreading.Lec_32.Profiling;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Drop-in ReadWriteLock (e.g. for Lec_32.ReadWriteLock.SharedResource.read / write(ReadWriteLock)) backed by a
+// ReentrantReadWriteLock, read and write acquisitions are recorded under the same name in LockProfiler.DEFAULT
+// (the JFR event's "mode" tells them apart)
+public class ProfiledReadWriteLock implements ReadWriteLock {
+
+    private final ReentrantReadWriteLock delegate;
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    public ProfiledReadWriteLock(String name) {
+        this(name, false);
+    }
+
+    public ProfiledReadWriteLock(String name, boolean fair) {
+        this.delegate = new ReentrantReadWriteLock(fair);
+        LockStats stats = LockProfiler.DEFAULT.register(name, "ReadWriteLock");
+        this.readLock = new ProfiledLock(delegate.readLock(), stats, "read");
+        this.writeLock = new ProfiledLock(delegate.writeLock(), stats, "write");
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+}
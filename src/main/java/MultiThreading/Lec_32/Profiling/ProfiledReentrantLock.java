@@ -0,0 +1,118 @@
+package MultiThreading.Lec_32.Profiling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Drop-in ReentrantLock (e.g. for Lec_32.ReentrantLock.SharedResource.produce(ReentrantLock)) which records
+// its contention in LockProfiler.DEFAULT
+//
+// - re-entering a lock the thread already holds isn't recorded (no wait, same hold)
+// - uncontended = tryLock() succeeded (non-fair) / tryLock(0, ..) succeeded (fair, no barging)
+// - Condition.await() releases and re-acquires inside the JDK: the hold time includes the await
+public class ProfiledReentrantLock extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final LockProfiler PROFILER = LockProfiler.DEFAULT;
+    private final transient LockStats stats;
+
+    public ProfiledReentrantLock(String name) {
+        this(name, false);
+    }
+
+    public ProfiledReentrantLock(String name, boolean fair) {
+        super(fair);
+        this.stats = PROFILER.register(name, "ReentrantLock");
+    }
+
+    @Override
+    public void lock() {
+        if (!PROFILER.isEnabled() || isHeldByCurrentThread()) {
+            super.lock();
+            return;
+        }
+
+        if (tryFastPath()) {
+            PROFILER.acquiredUncontended(stats);
+            return;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        super.lock();
+        PROFILER.acquiredContended(stats, start, event, "exclusive");
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (!PROFILER.isEnabled() || isHeldByCurrentThread()) {
+            super.lockInterruptibly();
+            return;
+        }
+
+        if (tryFastPath()) {
+            PROFILER.acquiredUncontended(stats);
+            return;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        super.lockInterruptibly();
+        PROFILER.acquiredContended(stats, start, event, "exclusive");
+    }
+
+    @Override
+    public boolean tryLock() {
+        boolean reentry = isHeldByCurrentThread();
+        boolean acquired = super.tryLock();
+
+        if (acquired && !reentry && PROFILER.isEnabled()) {
+            PROFILER.acquiredUncontended(stats);
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!PROFILER.isEnabled() || isHeldByCurrentThread()) {
+            return super.tryLock(timeout, unit);
+        }
+
+        if (tryFastPath()) {
+            PROFILER.acquiredUncontended(stats);
+            return true;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        boolean acquired = super.tryLock(timeout, unit);
+        if (acquired) {
+            PROFILER.acquiredContended(stats, start, event, "exclusive");
+        }
+        return acquired;
+    }
+
+    private boolean tryFastPath() {
+        if (!isFair()) {
+            return super.tryLock();
+        }
+
+        // tryLock() would barge in front of queued threads, the timed one honours the fairness (and never waits)
+        try {
+            return super.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // lock() ignores it, lockInterruptibly() throws it
+            return false;
+        }
+    }
+
+    @Override
+    public void unlock() {
+        boolean outermost = getHoldCount() == 1;
+        super.unlock();
+
+        if (outermost && PROFILER.isEnabled()) {
+            PROFILER.released(stats);
+        }
+    }
+}
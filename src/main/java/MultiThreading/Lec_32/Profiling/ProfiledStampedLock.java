@@ -0,0 +1,306 @@
+package MultiThreading.Lec_32.Profiling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+// Drop-in StampedLock (e.g. for Lec_32.StampedLock.*.SharedResource) which records its contention in
+// LockProfiler.DEFAULT, read and write acquisitions under the same name
+//
+// - tryOptimisticRead() is free as before, validate() == false counts as a failed optimistic read
+// - tryConvertTo*(): read <-> write keeps the hold going, optimistic -> read / write is an (uncontended)
+//   acquisition, read / write -> optimistic a release
+// - asReadLock() / asWriteLock() return views which go through the profiled methods (the JDK views release
+//   through private methods, the release would never be seen)
+public class ProfiledStampedLock extends StampedLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final LockProfiler PROFILER = LockProfiler.DEFAULT;
+    private final transient LockStats stats;
+
+    public ProfiledStampedLock(String name) {
+        this.stats = PROFILER.register(name, "StampedLock");
+    }
+
+    @Override
+    public long writeLock() {
+        if (!PROFILER.isEnabled()) {
+            return super.writeLock();
+        }
+
+        long stamp = super.tryWriteLock();
+        if (stamp != 0) {
+            PROFILER.acquiredUncontended(stats);
+            return stamp;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        stamp = super.writeLock();
+        PROFILER.acquiredContended(stats, start, event, "write");
+        return stamp;
+    }
+
+    @Override
+    public long writeLockInterruptibly() throws InterruptedException {
+        if (!PROFILER.isEnabled()) {
+            return super.writeLockInterruptibly();
+        }
+
+        long stamp = super.tryWriteLock();
+        if (stamp != 0) {
+            PROFILER.acquiredUncontended(stats);
+            return stamp;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        stamp = super.writeLockInterruptibly();
+        PROFILER.acquiredContended(stats, start, event, "write");
+        return stamp;
+    }
+
+    @Override
+    public long tryWriteLock() {
+        long stamp = super.tryWriteLock();
+        if (stamp != 0 && PROFILER.isEnabled()) {
+            PROFILER.acquiredUncontended(stats);
+        }
+        return stamp;
+    }
+
+    @Override
+    public long tryWriteLock(long time, TimeUnit unit) throws InterruptedException {
+        if (!PROFILER.isEnabled()) {
+            return super.tryWriteLock(time, unit);
+        }
+
+        long stamp = super.tryWriteLock();
+        if (stamp != 0) {
+            PROFILER.acquiredUncontended(stats);
+            return stamp;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        stamp = super.tryWriteLock(time, unit);
+        if (stamp != 0) {
+            PROFILER.acquiredContended(stats, start, event, "write");
+        }
+        return stamp;
+    }
+
+    @Override
+    public long readLock() {
+        if (!PROFILER.isEnabled()) {
+            return super.readLock();
+        }
+
+        long stamp = super.tryReadLock();
+        if (stamp != 0) {
+            PROFILER.acquiredUncontended(stats);
+            return stamp;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        stamp = super.readLock();
+        PROFILER.acquiredContended(stats, start, event, "read");
+        return stamp;
+    }
+
+    @Override
+    public long readLockInterruptibly() throws InterruptedException {
+        if (!PROFILER.isEnabled()) {
+            return super.readLockInterruptibly();
+        }
+
+        long stamp = super.tryReadLock();
+        if (stamp != 0) {
+            PROFILER.acquiredUncontended(stats);
+            return stamp;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        stamp = super.readLockInterruptibly();
+        PROFILER.acquiredContended(stats, start, event, "read");
+        return stamp;
+    }
+
+    @Override
+    public long tryReadLock() {
+        long stamp = super.tryReadLock();
+        if (stamp != 0 && PROFILER.isEnabled()) {
+            PROFILER.acquiredUncontended(stats);
+        }
+        return stamp;
+    }
+
+    @Override
+    public long tryReadLock(long time, TimeUnit unit) throws InterruptedException {
+        if (!PROFILER.isEnabled()) {
+            return super.tryReadLock(time, unit);
+        }
+
+        long stamp = super.tryReadLock();
+        if (stamp != 0) {
+            PROFILER.acquiredUncontended(stats);
+            return stamp;
+        }
+
+        LockContendedEvent event = PROFILER.beginContended(stats);
+        long start = System.nanoTime();
+        stamp = super.tryReadLock(time, unit);
+        if (stamp != 0) {
+            PROFILER.acquiredContended(stats, start, event, "read");
+        }
+        return stamp;
+    }
+
+    @Override
+    public boolean validate(long stamp) {
+        boolean valid = super.validate(stamp);
+        if (!valid && PROFILER.isEnabled()) {
+            stats.optimisticFailures.increment();
+        }
+        return valid;
+    }
+
+    @Override
+    public void unlockWrite(long stamp) {
+        super.unlockWrite(stamp);
+        released();
+    }
+
+    @Override
+    public void unlockRead(long stamp) {
+        super.unlockRead(stamp);
+        released();
+    }
+
+    @Override
+    public void unlock(long stamp) {
+        super.unlock(stamp);
+        released();
+    }
+
+    @Override
+    public boolean tryUnlockWrite() {
+        boolean unlocked = super.tryUnlockWrite();
+        if (unlocked) {
+            released();
+        }
+        return unlocked;
+    }
+
+    @Override
+    public boolean tryUnlockRead() {
+        boolean unlocked = super.tryUnlockRead();
+        if (unlocked) {
+            released();
+        }
+        return unlocked;
+    }
+
+    @Override
+    public long tryConvertToWriteLock(long stamp) {
+        long converted = super.tryConvertToWriteLock(stamp);
+        if (converted != 0 && isOptimisticReadStamp(stamp)) {
+            acquired();
+        }
+        return converted;
+    }
+
+    @Override
+    public long tryConvertToReadLock(long stamp) {
+        long converted = super.tryConvertToReadLock(stamp);
+        if (converted != 0 && isOptimisticReadStamp(stamp)) {
+            acquired();
+        }
+        return converted;
+    }
+
+    @Override
+    public long tryConvertToOptimisticRead(long stamp) {
+        long converted = super.tryConvertToOptimisticRead(stamp);
+        if (converted != 0 && (isReadLockStamp(stamp) || isWriteLockStamp(stamp))) {
+            released();
+        }
+        return converted;
+    }
+
+    private void acquired() {
+        if (PROFILER.isEnabled()) {
+            PROFILER.acquiredUncontended(stats);
+        }
+    }
+
+    private void released() {
+        if (PROFILER.isEnabled()) {
+            PROFILER.released(stats);
+        }
+    }
+
+    @Override
+    public Lock asReadLock() {
+        return new View(false);
+    }
+
+    @Override
+    public Lock asWriteLock() {
+        return new View(true);
+    }
+
+    // Lock view without stamps, like the JDK's (no conditions)
+    private final class View implements Lock {
+        private final boolean write;
+
+        View(boolean write) {
+            this.write = write;
+        }
+
+        @Override
+        public void lock() {
+            if (write) {
+                writeLock();
+            } else {
+                readLock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (write) {
+                writeLockInterruptibly();
+            } else {
+                readLockInterruptibly();
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            return (write ? tryWriteLock() : tryReadLock()) != 0;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return (write ? tryWriteLock(time, unit) : tryReadLock(time, unit)) != 0;
+        }
+
+        @Override
+        public void unlock() {
+            boolean unlocked = write ? tryUnlockWrite() : tryUnlockRead();
+            if (!unlocked) {
+                throw new IllegalMonitorStateException();
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
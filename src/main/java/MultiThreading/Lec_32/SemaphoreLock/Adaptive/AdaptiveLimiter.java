@@ -0,0 +1,110 @@
+package MultiThreading.Lec_32.SemaphoreLock.Adaptive;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Like a Semaphore whose number of permits follows the downstream (see LimitAlgorithm), with 2 differences:
+// - no waiting: over the limit tryAcquire() returns null right away, the caller sheds / retries the request
+//   (queueing in front of a slow downstream only adds latency to every request)
+// - the limit changes at runtime: every finished call reports its RTT and whether it failed
+//
+// tryAcquire() is lock-free: one CAS on "inFlight" against a volatile read of "limit"
+// the algorithm runs on release, serialized by a lock (it's one call per request, not per acquire attempt)
+public class AdaptiveLimiter {
+
+    private static final VarHandle RELEASED;
+
+    static {
+        try {
+            RELEASED = MethodHandles.lookup().findVarHandle(Permit.class, "released", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final LimitAlgorithm algorithm;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveLimiter(LimitAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        this.limit = algorithm.initialLimit();
+    }
+
+    // null = over the limit
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return new Permit(System.nanoTime(), current + 1);
+            }
+        }
+    }
+
+    private void release(Permit permit, boolean dropped, boolean measured) {
+        // only the first call counts: a second one would free somebody else's slot (and skew the algorithm)
+        if (!RELEASED.compareAndSet(permit, false, true)) {
+            return;
+        }
+        inFlight.decrementAndGet();
+
+        if (measured) {
+            long rtt = System.nanoTime() - permit.startNanos;
+            synchronized (algorithm) {
+                limit = Math.max(1, algorithm.update(limit, rtt, permit.inFlight, dropped));
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    // one of success() / dropped() / ignore() per permit, any further call is ignored
+    public final class Permit {
+        private final long startNanos;
+        private final int inFlight;
+        private volatile boolean released; // set by the first release, see RELEASED
+
+        private Permit(long startNanos, int inFlight) {
+            this.startNanos = startNanos;
+            this.inFlight = inFlight;
+        }
+
+        public void success() {
+            release(this, false, true);
+        }
+
+        // the call failed because of overload (timeout, rejected by the downstream)
+        public void dropped() {
+            release(this, true, true);
+        }
+
+        // the call failed for a reason which says nothing about load (e.g. a bad request), no sample
+        public void ignore() {
+            release(this, false, false);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package MultiThreading.Lec_32.SemaphoreLock.Adaptive;
+
+import java.time.Duration;
+
+// Additive increase / multiplicative decrease (like TCP Reno)
+// - success while the limit is actually used: +1 per "limit" successes (i.e. +1 per round of calls)
+// - drop, or a call slower than "timeout": limit * backoffRatio
+// only reacts to failures, so it keeps probing up to the point where calls start to fail (sawtooth)
+public class AimdLimit implements LimitAlgorithm {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int initialLimit;
+    private final double backoffRatio;
+    private final long timeoutNanos;
+
+    private double limit;
+
+    public AimdLimit(int minLimit, int maxLimit, int initialLimit, double backoffRatio, Duration timeout) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1: " + backoffRatio);
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.initialLimit = initialLimit;
+        this.backoffRatio = backoffRatio;
+        this.timeoutNanos = timeout.toNanos();
+        this.limit = initialLimit;
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int current, long rttNanos, int inFlight, boolean dropped) {
+        if (dropped || rttNanos > timeoutNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= current) {
+            // not when only a few calls run: a limit nobody uses says nothing about the downstream
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        return (int) limit;
+    }
+}
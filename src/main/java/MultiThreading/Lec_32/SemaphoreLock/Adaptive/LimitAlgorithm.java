@@ -0,0 +1,12 @@
+package MultiThreading.Lec_32.SemaphoreLock.Adaptive;
+
+// Computes the next concurrency limit of an AdaptiveLimiter from one finished call
+// called by one thread at a time (the limiter serializes updates), so implementations may keep plain state
+public interface LimitAlgorithm {
+
+    int initialLimit();
+
+    // rttNanos: acquire -> release of this call, inFlight: calls running when it started,
+    // dropped: the call failed / timed out (overload signal)
+    int update(int limit, long rttNanos, int inFlight, boolean dropped);
+}
@@ -0,0 +1,88 @@
+package MultiThreading.Lec_32.SemaphoreLock.Adaptive;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Simulated downstream: 20 workers (a Semaphore(20)), 5 ms per call, calls beyond 20 wait for a worker
+// and time out after 100 ms -> the best in-flight count is 20 (more only waits in the downstream's queue)
+//
+// 200 client threads call it as fast as they can through an AdaptiveLimiter, a rejected call backs off 1 ms
+// the limit is printed every 500 ms: Vegas hovers around 20, anywhere from ~15 to ~26 depending on the run
+// (its alpha / beta band tolerates a few queued calls, with 200 threads on few cores the RTTs are noisy),
+// AIMD only backs off once calls get slower than its timeout, so it keeps overshooting into the downstream's queue
+public class Main {
+
+    private static final int DOWNSTREAM_WORKERS = 20;
+    private static final long SERVICE_MILLIS = 5;
+    private static final long DOWNSTREAM_TIMEOUT_MILLIS = 100;
+    private static final int CLIENTS = 200;
+    private static final int SECONDS = 6;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        run("vegas", new AdaptiveLimiter(new VegasLimit(1, 200, 5)));
+        run("aimd", new AdaptiveLimiter(new AimdLimit(1, 200, 5, 0.9, Duration.ofMillis(20))));
+
+        System.out.println("Main method ends...");
+    }
+
+    private static void run(String name, AdaptiveLimiter limiter) throws InterruptedException {
+        Semaphore downstream = new Semaphore(DOWNSTREAM_WORKERS, true);
+        LongAdder succeeded = new LongAdder();
+        LongAdder timedOut = new LongAdder();
+        LongAdder latencyNanos = new LongAdder();
+        long end = System.nanoTime() + SECONDS * 1_000_000_000L;
+
+        Thread[] clients = new Thread[CLIENTS];
+        for (int c = 0; c < CLIENTS; c++) {
+            clients[c] = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        AdaptiveLimiter.Permit permit = limiter.tryAcquire();
+                        if (permit == null) {
+                            Thread.sleep(1); // shed: back off instead of queueing
+                            continue;
+                        }
+
+                        long start = System.nanoTime();
+                        if (!downstream.tryAcquire(DOWNSTREAM_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                            timedOut.increment();
+                            permit.dropped();
+                            continue;
+                        }
+                        try {
+                            Thread.sleep(SERVICE_MILLIS);
+                        } finally {
+                            downstream.release();
+                        }
+
+                        latencyNanos.add(System.nanoTime() - start);
+                        succeeded.increment();
+                        permit.success();
+                    }
+                } catch (InterruptedException e) {
+                    // exception handling
+                }
+            });
+            clients[c].start();
+        }
+
+        StringBuilder limits = new StringBuilder();
+        while (System.nanoTime() < end) {
+            Thread.sleep(500);
+            limits.append(limiter.getLimit()).append(' ');
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        System.out.println(name + " limit every 500 ms: " + limits);
+        System.out.printf("%s: %,d calls/sec, avg latency %.1f ms, timed out: %d, rejected by limiter: %,d%n",
+                name, succeeded.sum() / SECONDS, latencyNanos.sum() / 1e6 / Math.max(1, succeeded.sum()),
+                timedOut.sum(), limiter.getRejected());
+    }
+}
@@ -0,0 +1,65 @@
+package MultiThreading.Lec_32.SemaphoreLock.Adaptive;
+
+// Delay based (like TCP Vegas): estimates how many calls wait in the downstream's queue instead of waiting
+// for failures
+//
+//   queue = limit * (1 - minRtt / rtt)     minRtt = RTT without queueing (lowest seen)
+//   queue < alpha -> limit + log10(limit)  (downstream has room)
+//   queue > beta  -> limit - log10(limit)  (calls are queueing, more in flight only adds latency)
+//   drop          -> limit / 2
+// alpha / beta grow with log10(limit), so large limits tolerate a few queued calls
+//
+// minRtt is forgotten every "probeInterval" samples: if the downstream got slower for good, the old
+// minimum would make every RTT look like queueing
+public class VegasLimit implements LimitAlgorithm {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int initialLimit;
+    private final int probeInterval;
+
+    private double limit;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long samples;
+
+    public VegasLimit(int minLimit, int maxLimit, int initialLimit, int probeInterval) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.initialLimit = initialLimit;
+        this.probeInterval = probeInterval;
+        this.limit = initialLimit;
+    }
+
+    public VegasLimit(int minLimit, int maxLimit, int initialLimit) {
+        this(minLimit, maxLimit, initialLimit, 10_000);
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int current, long rttNanos, int inFlight, boolean dropped) {
+        if (++samples % probeInterval == 0) {
+            minRttNanos = Long.MAX_VALUE;
+        }
+
+        if (dropped) {
+            limit = Math.max(minLimit, limit / 2);
+            return (int) limit;
+        }
+
+        minRttNanos = Math.min(minRttNanos, rttNanos);
+
+        double log = Math.max(1, Math.log10(limit));
+        double queue = limit * (1 - (double) minRttNanos / rttNanos);
+
+        if (queue < 3 * log && inFlight * 2 >= current) {
+            limit = Math.min(maxLimit, limit + log / limit); // + log per round of calls
+        } else if (queue > 6 * log) {
+            limit = Math.max(minLimit, limit - log / limit);
+        }
+        return (int) limit;
+    }
+}
@@ -5,6 +5,8 @@ import java.util.concurrent.locks.StampedLock;
 public class SharedResource {
     int a = 10;
 
+    // demo of validate() only: writing under an optimistic stamp isn't safe (readers may see a = 11 before the
+    // "rollback"), see SeqLock.VersionedValue for optimistic reads + writes under the write lock
     public void produce(StampedLock lock) {
         long stamp = lock.tryOptimisticRead();
 
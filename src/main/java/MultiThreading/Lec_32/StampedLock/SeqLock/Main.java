@@ -0,0 +1,143 @@
+package MultiThreading.Lec_32.StampedLock.SeqLock;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Read / write ratio benchmark for a price snapshot (bid, ask, time), invariant: ask == bid + 1
+//   seqlock    : VersionedValue, changed in place
+//   rwlock     : ReentrantReadWriteLock (as in Lec_32 ReadWriteLock), changed in place
+//   cow        : volatile reference to an immutable snapshot, every write allocates a new one
+// Every read checks the invariant, "torn" counts reads which saw half of a write (must stay 0)
+public class Main {
+
+    private static final int[] READS_PER_WRITE = {10, 100, 1000};
+    private static final int THREADS = 4;
+    private static final long RUN_NANOS = 1_000_000_000L;
+
+    static final class Prices {
+        long bid;
+        long ask;
+        long time;
+    }
+
+    record ImmutablePrices(long bid, long ask, long time) {
+    }
+
+    interface Store {
+        long read(); // bid, -1 when the invariant is broken
+
+        void write(long bid);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+        System.out.println("threads: " + THREADS + ", cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.println("reads/write  implementation     ops/sec  torn");
+
+        for (int ratio : READS_PER_WRITE) {
+            run(ratio, "seqlock", seqlock());
+            run(ratio, "rwlock", rwlock());
+            run(ratio, "cow", copyOnWrite());
+        }
+
+        System.out.println("Main method ends...");
+    }
+
+    private static Store seqlock() {
+        VersionedValue<Prices> prices = new VersionedValue<>(new Prices());
+        prices.update(p -> p.ask = 1);
+
+        return new Store() {
+            public long read() {
+                return prices.readLong(p -> p.ask == p.bid + 1 ? p.bid : -1);
+            }
+
+            public void write(long bid) {
+                prices.update(p -> {
+                    p.bid = bid;
+                    p.ask = bid + 1;
+                    p.time = System.nanoTime();
+                });
+            }
+        };
+    }
+
+    private static Store rwlock() {
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        Prices prices = new Prices();
+        prices.ask = 1;
+
+        return new Store() {
+            public long read() {
+                lock.readLock().lock();
+                try {
+                    return prices.ask == prices.bid + 1 ? prices.bid : -1;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            public void write(long bid) {
+                lock.writeLock().lock();
+                try {
+                    prices.bid = bid;
+                    prices.ask = bid + 1;
+                    prices.time = System.nanoTime();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    private static Store copyOnWrite() {
+        return new Store() {
+            volatile ImmutablePrices prices = new ImmutablePrices(0, 1, 0);
+
+            public long read() {
+                ImmutablePrices p = prices;
+                return p.ask() == p.bid() + 1 ? p.bid() : -1;
+            }
+
+            public void write(long bid) {
+                prices = new ImmutablePrices(bid, bid + 1, System.nanoTime());
+            }
+        };
+    }
+
+    private static void run(int readsPerWrite, String name, Store store) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        LongAdder torn = new LongAdder();
+        long end = System.nanoTime() + RUN_NANOS;
+
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long broken = 0;
+
+                // check the clock every 1024 ops only, it costs more than a read
+                while ((count & 1023) != 0 || System.nanoTime() < end) {
+                    if (random.nextInt(readsPerWrite + 1) == 0) {
+                        store.write(count);
+                    } else if (store.read() < 0) {
+                        broken++;
+                    }
+                    count++;
+                }
+
+                ops.add(count);
+                torn.add(broken);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("%11d  %-14s %,11.0f  %4d%n", readsPerWrite, name, ops.sum() / (RUN_NANOS / 1e9), torn.sum());
+    }
+}
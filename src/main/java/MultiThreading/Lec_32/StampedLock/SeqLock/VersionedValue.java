@@ -0,0 +1,106 @@
+package MultiThreading.Lec_32.StampedLock.SeqLock;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// Seqlock container for read-mostly state (config, routing table, price snapshot) which is changed in place
+//
+// The right way round of OptimisticLock.SharedResource.produce(): optimistic stamps are for READING only,
+// every write happens under the write lock
+// - readers: tryOptimisticRead() -> read the fields -> validate(); no CAS, no write to shared memory, so
+//   readers on different cores don't fight over a cache line (a ReentrantReadWriteLock read lock CASes its state)
+// - validate() fails only when a writer ran meanwhile: retry optimistically a few times, then take the read lock
+// - writers: write lock -> change the state -> unlock, readers see the whole change or none of it
+//
+// The reader function may see a half written state before validate() fails, so it must only read
+// (no side effects) and must not trust what it read till read() returns. Exceptions caused by such a
+// state (e.g. an index from one version used on an array of another) are treated like a failed validate().
+public class VersionedValue<T> {
+
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+    private final StampedLock lock = new StampedLock();
+    private final T state;
+
+    public VersionedValue(T state) {
+        this.state = state;
+    }
+
+    public <R> R read(Function<? super T, ? extends R> reader) {
+        for (int i = 0; i < OPTIMISTIC_ATTEMPTS; i++) {
+            long stamp = lock.tryOptimisticRead(); // 0 while a writer holds the lock
+            if (stamp == 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            try {
+                R result = reader.apply(state);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e; // a real error, not a torn read
+                }
+            }
+        }
+
+        // contention: a writer keeps changing it, wait for a consistent version
+        long stamp = lock.readLock();
+        try {
+            return reader.apply(state);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // same as read() without boxing the result
+    public long readLong(ToLongFunction<? super T> reader) {
+        for (int i = 0; i < OPTIMISTIC_ATTEMPTS; i++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            try {
+                long result = reader.applyAsLong(state);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        long stamp = lock.readLock();
+        try {
+            return reader.applyAsLong(state);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void update(Consumer<? super T> writer) {
+        long stamp = lock.writeLock();
+        try {
+            writer.accept(state);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // stamp of the current version (0 while a write is running), e.g. to skip re-reading unchanged state
+    public long version() {
+        return lock.tryOptimisticRead();
+    }
+
+    public boolean unchangedSince(long version) {
+        return version != 0 && lock.validate(version);
+    }
+}
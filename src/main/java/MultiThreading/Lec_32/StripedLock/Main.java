@@ -0,0 +1,118 @@
+package MultiThreading.Lec_32.StripedLock;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 1. scaling: threads increment random counters out of KEYS (uniform keys), each counter guarded by
+//    - one ReentrantLock for all keys
+//    - StripedLocks with 1024 stripes
+//    speedup only shows with as many cores as threads (with 1 core the threads just take turns)
+// 2. transfers between 2 random accounts with lockAll(): opposite directions run at the same time,
+//    no deadlock and the total stays the same
+public class Main {
+
+    private static final int KEYS = 1 << 20;
+    private static final int STRIPES = 1024;
+    private static final long RUN_NANOS = 500_000_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        System.out.println("Main method starts...");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("cores: " + cores);
+        System.out.println("threads  single lock ops/sec  striped ops/sec  striped speedup vs 1 thread");
+
+        double stripedOneThread = 0;
+        for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+            ReentrantLock single = new ReentrantLock();
+            StripedLocks<ReentrantLock> striped = StripedLocks.reentrant(STRIPES);
+
+            double singleRate = increments(threads, key -> single);
+            double stripedRate = increments(threads, striped::get);
+            if (threads == 1) {
+                stripedOneThread = stripedRate;
+            }
+
+            System.out.printf("%7d  %,19.0f  %,15.0f  %.2fx%n", threads, singleRate, stripedRate, stripedRate / stripedOneThread);
+        }
+
+        transfers();
+
+        System.out.println("Main method ends...");
+    }
+
+    @FunctionalInterface
+    private interface LockForKey {
+        ReentrantLock lockFor(Integer key);
+    }
+
+    private static double increments(int threadCount, LockForKey locks) throws InterruptedException {
+        long[] counters = new long[KEYS];
+        LongAdder ops = new LongAdder();
+        long end = System.nanoTime() + RUN_NANOS;
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+
+                while ((count & 1023) != 0 || System.nanoTime() < end) {
+                    int key = random.nextInt(KEYS);
+                    ReentrantLock lock = locks.lockFor(key);
+                    lock.lock();
+                    try {
+                        counters[key]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                    count++;
+                }
+                ops.add(count);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return ops.sum() / (RUN_NANOS / 1e9);
+    }
+
+    @SuppressWarnings("try") // "held" is only there to release the stripes
+    private static void transfers() throws InterruptedException {
+        int accounts = 64; // few accounts: many transfers touch the same stripes in opposite order
+        long[] balances = new long[accounts];
+        Arrays.fill(balances, 1_000);
+        StripedLocks<ReentrantLock> locks = StripedLocks.reentrant(16);
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 200_000; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = random.nextInt(accounts);
+
+                    try (StripedLocks.Held held = locks.lockAll(from, to)) {
+                        balances[from] -= 10;
+                        balances[to] += 10;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        System.out.println("transfers done, total balance: " + total + " (expected " + accounts * 1_000 + ")");
+    }
+}
@@ -0,0 +1,199 @@
+package MultiThreading.Lec_32.StripedLock;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// A fixed number of locks ("stripes") for resources keyed by ID: key -> hash -> stripe
+//
+// - one lock per key would need a map of locks (and cleanup), one lock for all keys serializes everything;
+//   N stripes let up to N threads work on different keys at the same time
+// - stripe count is rounded up to a power of two, so "hash % stripes" is "hash & mask"
+// - false sharing: a StampedLock keeps its state in its own fields, so stamped() stripes are a subclass with
+//   padding fields (part of the object, a GC can't move them apart), threads locking neighbouring stripes
+//   don't invalidate each other's cache line. ReentrantLock / ReentrantReadWriteLock / Semaphore keep their
+//   state in an internal AQS object we can't pad, those stripes may share a line (separately allocated
+//   padding objects don't help: copying collectors re-order objects by reference traversal)
+// - lockAll(): several keys at once (e.g. a transfer between 2 accounts), stripes are taken in ascending
+//   stripe index order, so 2 threads locking {a, b} and {b, a} can't deadlock; a stripe shared by 2 keys is
+//   taken once (a Semaphore stripe isn't reentrant)
+public final class StripedLocks<L> {
+
+    private final Object[] stripes;
+    private final Lock[] exclusive; // Lock view of every stripe (write lock / 1 permit)
+    private final Lock[] shared;    // read lock views, null for stripe types without a read mode
+    private final int mask;
+
+    private StripedLocks(int stripeCount, Supplier<L> factory, Function<L, Lock> exclusiveView, Function<L, Lock> sharedView) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripeCount must be positive: " + stripeCount);
+        }
+
+        int size = Integer.highestOneBit(stripeCount - 1) << 1;
+        size = Math.max(size, 1);
+        this.mask = size - 1;
+        this.stripes = new Object[size];
+        this.exclusive = new Lock[size];
+        this.shared = sharedView == null ? null : new Lock[size];
+
+        for (int i = 0; i < size; i++) {
+            L stripe = factory.get();
+            stripes[i] = stripe;
+            exclusive[i] = exclusiveView.apply(stripe);
+            if (sharedView != null) {
+                shared[i] = sharedView.apply(stripe);
+            }
+        }
+    }
+
+    public static StripedLocks<ReentrantLock> reentrant(int stripeCount) {
+        return new StripedLocks<>(stripeCount, ReentrantLock::new, lock -> lock, null);
+    }
+
+    public static StripedLocks<ReadWriteLock> readWrite(int stripeCount) {
+        return new StripedLocks<>(stripeCount, ReentrantReadWriteLock::new, ReadWriteLock::writeLock, ReadWriteLock::readLock);
+    }
+
+    public static StripedLocks<StampedLock> stamped(int stripeCount) {
+        return new StripedLocks<>(stripeCount, PaddedStampedLock::new, StampedLock::asWriteLock, StampedLock::asReadLock);
+    }
+
+    // every stripe allows "permits" holders at a time, lockAll() takes 1 permit per stripe
+    public static StripedLocks<Semaphore> semaphore(int stripeCount, int permits) {
+        return new StripedLocks<>(stripeCount, () -> new Semaphore(permits), SemaphoreLock::new, null);
+    }
+
+    public int indexFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16); // spread high bits (same as HashMap)
+        return h & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public L get(Object key) {
+        return (L) stripes[indexFor(key)];
+    }
+
+    @SuppressWarnings("unchecked")
+    public L getAt(int index) {
+        return (L) stripes[index];
+    }
+
+    public int size() {
+        return stripes.length;
+    }
+
+    // exclusive: lock / write lock / 1 permit of every stripe of "keys", in ascending stripe order
+    public Held lockAll(Object... keys) {
+        return acquire(exclusive, keys);
+    }
+
+    // shared: read lock of every stripe of "keys" (ReadWriteLock and StampedLock stripes only)
+    public Held readLockAll(Object... keys) {
+        if (shared == null) {
+            throw new UnsupportedOperationException("stripes have no read mode");
+        }
+        return acquire(shared, keys);
+    }
+
+    private Held acquire(Lock[] views, Object[] keys) {
+        int[] indexes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            indexes[i] = indexFor(keys[i]);
+        }
+        Arrays.sort(indexes);
+
+        Lock[] locks = new Lock[keys.length];
+        int count = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (i == 0 || indexes[i] != indexes[i - 1]) {
+                locks[count++] = views[indexes[i]];
+            }
+        }
+
+        Held held = new Held(locks);
+        try {
+            for (int i = 0; i < count; i++) {
+                locks[i].lock();
+                held.count++;
+            }
+        } catch (RuntimeException | Error e) {
+            held.close(); // release what we already got
+            throw e;
+        }
+        return held;
+    }
+
+    // stripes taken by lockAll() / readLockAll(), close() releases them in reverse order
+    public static final class Held implements AutoCloseable {
+        private final Lock[] locks;
+        private int count;
+
+        private Held(Lock[] locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void close() {
+            while (count > 0) {
+                locks[--count].unlock();
+            }
+        }
+    }
+
+    // 16 longs (128 bytes) after the lock's state: the next object's fields are at least 2 cache lines away,
+    // also out of reach of the adjacent-line prefetcher
+    private static final class PaddedStampedLock extends StampedLock {
+        private static final long serialVersionUID = 1L;
+
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    // Lock view of a Semaphore: 1 permit (unlike a real lock, any thread may release it)
+    private static final class SemaphoreLock implements Lock {
+        private final Semaphore semaphore;
+
+        SemaphoreLock(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void lock() {
+            semaphore.acquireUninterruptibly();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            semaphore.acquire();
+        }
+
+        @Override
+        public boolean tryLock() {
+            return semaphore.tryAcquire();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return semaphore.tryAcquire(time, unit);
+        }
+
+        @Override
+        public void unlock() {
+            semaphore.release();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}